@@ -0,0 +1,80 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wavl.Tree;
+
+/**
+ * AppendBenchmark
+ *
+ * A sliding window over the prebuilt tree: every invocation adds a key above
+ * max and drops min, through insert / delete and through append / popMin,
+ * with and without order statistics. The distribution only shapes the
+ * prebuilt tree.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class AppendBenchmark {
+
+	public static class WindowState extends TreeState {
+
+		@Param({ "true", "false" })
+		public boolean orderStatistics;
+
+		int[] sorted;
+		int firstTail;
+		int head;
+		int tail;
+
+		@Override
+		@Setup(Level.Trial)
+		public void build() {
+			super.build();
+			sorted = tree.keysToArray();
+			firstTail = sorted[sorted.length - 1] + 2;
+			head = 0;
+			tail = firstTail;
+		}
+
+		/** the smallest key left in the window, dropping it **/
+
+		int dropOldest() {
+			int i = head++;
+			return i < sorted.length ? sorted[i] : firstTail + 2 * (i - sorted.length);
+		}
+
+		@Override
+		Tree newTree() {
+			return new Tree(false, orderStatistics);
+		}
+	}
+
+	@Benchmark
+	public int insertDelete(WindowState s) {
+		int counter = s.tree.insert(s.tail, "v");
+		s.tail += 2;
+		return counter + s.tree.delete(s.dropOldest());
+	}
+
+	@Benchmark
+	public String appendPopMin(WindowState s) {
+		s.tree.append(s.tail, "v");
+		s.tail += 2;
+		return s.tree.popMin();
+	}
+}
@@ -0,0 +1,70 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BatchBenchmark
+ *
+ * Inserting and then deleting a batch of absent keys against a prebuilt tree:
+ * one insert / delete per key against insertAll / deleteAll. Every invocation
+ * leaves the tree as it found it.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class BatchBenchmark {
+
+	public static class BatchState extends TreeState {
+
+		@Param({ "100", "1000" })
+		public int batch;
+
+		int[] batchKeys;
+		String[] batchValues;
+
+		@Override
+		@Setup(Level.Trial)
+		public void build() {
+			/** the odd keys next to the first batch probes **/
+
+			super.build();
+			batchKeys = new int[batch];
+			batchValues = new String[batch];
+			for (int i = 0; i < batch; i++) {
+				batchKeys[i] = keys[probes[i]] + 1;
+				batchValues[i] = "v";
+			}
+		}
+	}
+
+	@Benchmark
+	public int each(BatchState s) {
+		int counter = 0;
+		for (int i = 0; i < s.batch; i++) {
+			counter += Math.max(s.tree.insert(s.batchKeys[i], s.batchValues[i]), 0);
+		}
+		for (int i = 0; i < s.batch; i++) {
+			counter += Math.max(s.tree.delete(s.batchKeys[i]), 0);
+		}
+		return counter;
+	}
+
+	@Benchmark
+	public int all(BatchState s) {
+		return s.tree.insertAll(s.batchKeys, s.batchValues) + s.tree.deleteAll(s.batchKeys);
+	}
+}
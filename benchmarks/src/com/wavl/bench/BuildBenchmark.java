@@ -0,0 +1,64 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wavl.Tree;
+
+/**
+ * BuildBenchmark
+ *
+ * Building a tree from sorted keys: one insert per key against
+ * Tree.fromSorted.
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Thread)
+public class BuildBenchmark {
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int size;
+
+	int[] keys;
+	String[] values;
+
+	@Setup(Level.Trial)
+	public void sortedInput() {
+		keys = new int[size];
+		values = new String[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = 2 * i;
+			values[i] = Integer.toString(keys[i]);
+		}
+	}
+
+	@Benchmark
+	public Tree insertEach() {
+		Tree tree = new Tree();
+		for (int i = 0; i < size; i++) {
+			tree.insert(keys[i], values[i]);
+		}
+		return tree;
+	}
+
+	@Benchmark
+	public Tree fromSorted() {
+		return Tree.fromSorted(keys, values);
+	}
+}
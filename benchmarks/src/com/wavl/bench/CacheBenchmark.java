@@ -0,0 +1,56 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wavl.Tree;
+
+/**
+ * CacheBenchmark
+ *
+ * search, and search mixed with an insert / delete pair, with search caches
+ * of different sizes (0 is no cache). ZIPFIAN is the workload the cache is
+ * for; RANDOM shows what a miss on nearly every search costs.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class CacheBenchmark {
+
+	public static class CacheState extends TreeState {
+
+		@Param({ "0", "1024", "65536" })
+		public int cache;
+
+		@Override
+		Tree newTree() {
+			Tree tree = new Tree();
+			tree.setSearchCache(cache);
+			return tree;
+		}
+	}
+
+	@Benchmark
+	public String search(CacheState s) {
+		return s.tree.search(s.keys[s.nextProbe()]);
+	}
+
+	@Benchmark
+	public String searchInsertDelete(CacheState s) {
+		int k = s.keys[s.nextProbe()];
+		s.tree.insert(k + 1, "v");
+		s.tree.delete(k + 1);
+		return s.tree.search(k);
+	}
+}
@@ -0,0 +1,187 @@
+package com.wavl.bench;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wavl.ConcurrentTree;
+import com.wavl.ConcurrentTreeView;
+import com.wavl.ShardedTree;
+import com.wavl.Tree;
+import com.wavl.TreeExecutor;
+import com.wavl.VersionedTree;
+
+/**
+ * ConcurrentBenchmark
+ *
+ * Searches running next to a writer that inserts and deletes absent (odd)
+ * keys, on one shared tree: a Tree behind a global lock, a
+ * ConcurrentTreeView, a ConcurrentTree, a VersionedTree, a ShardedTree and a
+ * TreeExecutor (waiting on each future). Each group has three readers and one
+ * writer.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class ConcurrentBenchmark {
+
+	/** the operations the benchmark needs from each implementation **/
+	interface Index {
+		String search(int k);
+
+		int insert(int k, String i);
+
+		int delete(int k);
+	}
+
+	@State(Scope.Group)
+	public static class SharedTree {
+
+		@Param({ "100000", "1000000" })
+		public int size;
+
+		@Param({ "synchronized", "view", "concurrent", "versioned", "sharded", "executor" })
+		public String impl;
+
+		Index index;
+
+		@Setup(Level.Trial)
+		public void build() {
+			index = newIndex(impl);
+			int[] keys = KeyDistribution.RANDOM.initialKeys(size, new Random(42));
+			for (int k : keys) {
+				index.insert(k, Integer.toString(k));
+			}
+		}
+
+		Index newIndex(String impl) {
+			switch (impl) {
+			case "synchronized":
+				Tree tree = new Tree();
+				return new Index() {
+					public synchronized String search(int k) {
+						return tree.search(k);
+					}
+
+					public synchronized int insert(int k, String i) {
+						return tree.insert(k, i);
+					}
+
+					public synchronized int delete(int k) {
+						return tree.delete(k);
+					}
+				};
+			case "view":
+				ConcurrentTreeView view = new ConcurrentTreeView();
+				return new Index() {
+					public String search(int k) {
+						return view.search(k);
+					}
+
+					public int insert(int k, String i) {
+						return view.insert(k, i);
+					}
+
+					public int delete(int k) {
+						return view.delete(k);
+					}
+				};
+			case "concurrent":
+				ConcurrentTree concurrent = new ConcurrentTree();
+				return new Index() {
+					public String search(int k) {
+						return concurrent.search(k);
+					}
+
+					public int insert(int k, String i) {
+						return concurrent.insert(k, i);
+					}
+
+					public int delete(int k) {
+						return concurrent.delete(k);
+					}
+				};
+			case "versioned":
+				VersionedTree versioned = new VersionedTree();
+				return new Index() {
+					public String search(int k) {
+						return versioned.search(k);
+					}
+
+					public int insert(int k, String i) {
+						return versioned.insert(k, i);
+					}
+
+					public int delete(int k) {
+						return versioned.delete(k);
+					}
+				};
+			case "sharded":
+				ShardedTree sharded = new ShardedTree(Runtime.getRuntime().availableProcessors());
+				return new Index() {
+					public String search(int k) {
+						return sharded.search(k);
+					}
+
+					public int insert(int k, String i) {
+						return sharded.insert(k, i);
+					}
+
+					public int delete(int k) {
+						return sharded.delete(k);
+					}
+				};
+			case "executor":
+				TreeExecutor executor = new TreeExecutor();
+				return new Index() {
+					public String search(int k) {
+						return executor.search(k).join();
+					}
+
+					public int insert(int k, String i) {
+						return executor.insert(k, i).join();
+					}
+
+					public int delete(int k) {
+						return executor.delete(k).join();
+					}
+				};
+			default:
+				throw new IllegalArgumentException(impl);
+			}
+		}
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public String read(SharedTree s) {
+		return s.index.search(2 * ThreadLocalRandom.current().nextInt(s.size));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public int write(SharedTree s) {
+		int k = 2 * ThreadLocalRandom.current().nextInt(s.size) + 1;
+		return s.index.insert(k, "v") + s.index.delete(k);
+	}
+}
@@ -0,0 +1,56 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wavl.Tree;
+
+/**
+ * FingerBenchmark
+ *
+ * search and an insert / delete pair with and without finger search. The
+ * SEQUENTIAL and SLIDING_WINDOW distributions probe keys next to the last
+ * one, which is where the finger pays off; RANDOM shows what it costs when
+ * it doesn't.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class FingerBenchmark {
+
+	public static class FingerState extends TreeState {
+
+		@Param({ "false", "true" })
+		public boolean finger;
+
+		@Override
+		Tree newTree() {
+			Tree tree = new Tree();
+			tree.setFingerSearch(finger);
+			return tree;
+		}
+	}
+
+	@Benchmark
+	public String search(FingerState s) {
+		return s.tree.search(s.keys[s.nextProbe()]);
+	}
+
+	@Benchmark
+	public int insertDelete(FingerState s) {
+		int k = s.keys[s.nextProbe()] + 1;
+		int counter = s.tree.insert(k, "v");
+		return counter + s.tree.delete(k);
+	}
+}
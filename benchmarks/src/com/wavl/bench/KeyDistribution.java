@@ -0,0 +1,146 @@
+package com.wavl.bench;
+
+import java.util.Random;
+
+/**
+ * KeyDistribution
+ *
+ * The key distributions the benchmarks are run with. A tree of n keys always
+ * holds the even keys 0, 2, ..., 2(n-1), so every odd key is known to be
+ * absent and can be inserted without a lookup first.
+ *
+ */
+public enum KeyDistribution {
+
+	/** keys are inserted and probed in ascending order **/
+	SEQUENTIAL,
+
+	/** keys are inserted and probed uniformly at random **/
+	RANDOM,
+
+	/** keys are inserted at random and probed with a Zipfian skew **/
+	ZIPFIAN,
+
+	/**
+	 * keys are appended in ascending order, the oldest key is the next one to
+	 * be deleted, and probes favour the most recently appended keys
+	 **/
+	SLIDING_WINDOW;
+
+	/** the skew used by the Zipfian generator (the YCSB default) **/
+	static final double ZIPF_THETA = 0.99;
+
+	/**
+	 * public int[] initialKeys(int n, Random rnd)
+	 *
+	 * returns the n present keys in the order they should be inserted to build
+	 * the benchmark tree
+	 */
+
+	public int[] initialKeys(int n, Random rnd) {
+		int[] keys = new int[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = 2 * i;
+		}
+		if (this == RANDOM || this == ZIPFIAN) {
+			shuffle(keys, rnd);
+		}
+		return keys;
+	}
+
+	/**
+	 * public int[] probes(int[] initialKeys, int count, Random rnd)
+	 *
+	 * returns count indices into initialKeys, in the order the benchmark should
+	 * visit them. for a Zipfian distribution the hottest index is 0, which
+	 * initialKeys has already scattered across the key space.
+	 */
+
+	public int[] probes(int[] initialKeys, int count, Random rnd) {
+		int n = initialKeys.length;
+		int[] probes = new int[count];
+		switch (this) {
+		case SEQUENTIAL:
+			for (int i = 0; i < count; i++) {
+				probes[i] = i % n;
+			}
+			break;
+		case RANDOM:
+			for (int i = 0; i < count; i++) {
+				probes[i] = rnd.nextInt(n);
+			}
+			break;
+		case ZIPFIAN:
+			Zipf zipf = new Zipf(n, ZIPF_THETA);
+			for (int i = 0; i < count; i++) {
+				probes[i] = zipf.next(rnd);
+			}
+			break;
+		case SLIDING_WINDOW:
+			Zipf recent = new Zipf(n, ZIPF_THETA);
+			for (int i = 0; i < count; i++) {
+				probes[i] = n - 1 - recent.next(rnd);
+			}
+			break;
+		}
+		return probes;
+	}
+
+	private static void shuffle(int[] arr, Random rnd) {
+		/** Fisher-Yates shuffle **/
+
+		for (int i = arr.length - 1; i > 0; i--) {
+			int j = rnd.nextInt(i + 1);
+			int tmp = arr[i];
+			arr[i] = arr[j];
+			arr[j] = tmp;
+		}
+	}
+
+	/**
+	 * Zipf
+	 *
+	 * A Zipfian generator over [0, n), following Gray et al., "Quickly
+	 * Generating Billion-Record Synthetic Databases" (the YCSB generator).
+	 * Index 0 is the most popular.
+	 */
+
+	static final class Zipf {
+
+		private final int n;
+		private final double theta;
+		private final double alpha;
+		private final double zetan;
+		private final double eta;
+
+		Zipf(int n, double theta) {
+			this.n = n;
+			this.theta = theta;
+			double zeta2 = zeta(2, theta);
+			this.alpha = 1.0 / (1.0 - theta);
+			this.zetan = zeta(n, theta);
+			this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+		}
+
+		int next(Random rnd) {
+			double u = rnd.nextDouble();
+			double uz = u * zetan;
+			if (uz < 1.0) {
+				return 0;
+			}
+			if (uz < 1.0 + Math.pow(0.5, theta)) {
+				return Math.min(1, n - 1);
+			}
+			int idx = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+			return Math.min(idx, n - 1);
+		}
+
+		private static double zeta(int n, double theta) {
+			double sum = 0;
+			for (int i = 1; i <= n; i++) {
+				sum += 1 / Math.pow(i, theta);
+			}
+			return sum;
+		}
+	}
+}
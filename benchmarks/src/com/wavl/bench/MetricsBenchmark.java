@@ -0,0 +1,57 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wavl.Tree;
+import com.wavl.TreeMetrics;
+
+/**
+ * MetricsBenchmark
+ *
+ * The cost of TreeMetrics: search and an insert / delete pair on a tree
+ * without metrics and on one that counts them.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class MetricsBenchmark {
+
+	public static class MetricsState extends TreeState {
+
+		@Param({ "false", "true" })
+		public boolean metrics;
+
+		@Override
+		Tree newTree() {
+			Tree tree = new Tree();
+			if (metrics) {
+				tree.setMetrics(new TreeMetrics());
+			}
+			return tree;
+		}
+	}
+
+	@Benchmark
+	public String search(MetricsState s) {
+		return s.tree.search(s.keys[s.nextProbe()]);
+	}
+
+	@Benchmark
+	public int insertDelete(MetricsState s) {
+		int k = s.keys[s.nextProbe()] + 1;
+		int counter = s.tree.insert(k, "v");
+		return counter + s.tree.delete(k);
+	}
+}
@@ -0,0 +1,105 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MutationBenchmark
+ *
+ * insert and delete against a prebuilt tree. insert and delete are measured
+ * as single shots of BATCH operations each (so the tree never drifts by more
+ * than BATCH keys), and the tree is restored after every iteration.
+ * insertDelete is the steady-state pair: for SLIDING_WINDOW it appends a new
+ * key and drops the oldest one, otherwise it inserts an absent key and
+ * deletes it again.
+ *
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class MutationBenchmark {
+
+	/** operations per single shot; no larger than the smallest size **/
+	static final int BATCH = 1000;
+
+	public static class MutationState extends TreeState {
+
+		int inserted;
+		int deleted;
+		int head;
+		int tail;
+
+		@Setup(Level.Trial)
+		public void window() {
+			head = 0;
+			tail = size;
+		}
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			inserted = 0;
+			deleted = 0;
+		}
+
+		@TearDown(Level.Iteration)
+		public void restore() {
+			/** undo whatever insert / delete did during the iteration **/
+
+			for (int i = 0; i < inserted; i++) {
+				tree.delete(insertKey(i));
+			}
+			for (int i = 0; i < deleted; i++) {
+				tree.insert(keys[i], Integer.toString(keys[i]));
+			}
+		}
+
+		int insertKey(int i) {
+			/** the i'th absent key, in the order of the distribution **/
+
+			if (distribution == KeyDistribution.SLIDING_WINDOW) {
+				return 2 * (size + i);
+			}
+			return keys[i] + 1;
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 5, batchSize = BATCH)
+	@Measurement(iterations = 20, batchSize = BATCH)
+	public int insert(MutationState s) {
+		int k = s.insertKey(s.inserted++);
+		return s.tree.insert(k, "v");
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 5, batchSize = BATCH)
+	@Measurement(iterations = 20, batchSize = BATCH)
+	public int delete(MutationState s) {
+		return s.tree.delete(s.keys[s.deleted++]);
+	}
+
+	@Benchmark
+	@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public int insertDelete(MutationState s) {
+		if (s.distribution == KeyDistribution.SLIDING_WINDOW) {
+			int counter = s.tree.insert(2 * s.tail++, "v");
+			return counter + s.tree.delete(2 * s.head++);
+		}
+		int k = s.keys[s.nextProbe()] + 1;
+		int counter = s.tree.insert(k, "v");
+		return counter + s.tree.delete(k);
+	}
+}
@@ -0,0 +1,57 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wavl.Tree;
+
+/**
+ * RecursionBenchmark
+ *
+ * Compares the loop versions of the search, size and rebalance paths with
+ * the original recursive ones (new Tree(true)).
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class RecursionBenchmark {
+
+	public static class RecursionState extends TreeState {
+
+		@Param({ "false", "true" })
+		public boolean recursive;
+
+		@Override
+		Tree newTree() {
+			return new Tree(recursive);
+		}
+	}
+
+	@Benchmark
+	public String search(RecursionState s) {
+		return s.tree.search(s.keys[s.nextProbe()]);
+	}
+
+	@Benchmark
+	public String select(RecursionState s) {
+		return s.tree.select(s.keys[s.nextProbe()] / 2);
+	}
+
+	@Benchmark
+	public int insertDelete(RecursionState s) {
+		int k = s.keys[s.nextProbe()] + 1;
+		int counter = s.tree.insert(k, "v");
+		return counter + s.tree.delete(k);
+	}
+}
@@ -0,0 +1,78 @@
+package com.wavl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wavl.Tree;
+
+/**
+ * TreeBenchmark
+ *
+ * Read-only operations against a prebuilt tree: search, select, rangeCount,
+ * the two array exports and a cursor scan of the same keys. Run with {@code -prof gc} for allocation rates;
+ * SampleTime reports the latency percentiles.
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xss16m" })
+public class TreeBenchmark {
+
+	@Benchmark
+	public String search(TreeState s) {
+		return s.tree.search(s.keys[s.nextProbe()]);
+	}
+
+	@Benchmark
+	public String searchMissing(TreeState s) {
+		/** odd keys are never in the tree **/
+
+		return s.tree.search(s.keys[s.nextProbe()] + 1);
+	}
+
+	@Benchmark
+	public String select(TreeState s) {
+		/** keys[i] is the (keys[i] / 2)'th smallest key **/
+
+		return s.tree.select(s.keys[s.nextProbe()] / 2);
+	}
+
+	@Benchmark
+	public int rangeCount(TreeState s) {
+		/** a window of up to 1000 keys starting at the probe **/
+
+		int lo = s.keys[s.nextProbe()];
+		return s.tree.rangeCount(lo, lo + 2000);
+	}
+
+	@Benchmark
+	public int[] keysToArray(TreeState s) {
+		return s.tree.keysToArray();
+	}
+
+	@Benchmark
+	public String[] infoToArray(TreeState s) {
+		return s.tree.infoToArray();
+	}
+
+	@Benchmark
+	public long cursorScan(TreeState s) {
+		/** visits every key, like keysToArray, without the array **/
+
+		long sum = 0;
+		Tree.Cursor cursor = s.tree.cursor();
+		while (cursor.next()) {
+			sum += cursor.key();
+		}
+		return sum;
+	}
+}
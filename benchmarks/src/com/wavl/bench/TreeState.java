@@ -0,0 +1,62 @@
+package com.wavl.bench;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.wavl.Tree;
+
+/**
+ * TreeState
+ *
+ * A prebuilt tree of {@code size} keys, plus a ring of probe indices drawn
+ * from {@code distribution}. The tree holds the even keys 0..2(size-1).
+ *
+ */
+@State(Scope.Thread)
+public class TreeState {
+
+	/** number of probes precomputed per trial (a power of two) **/
+	static final int PROBES = 1 << 20;
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "SEQUENTIAL", "RANDOM", "ZIPFIAN", "SLIDING_WINDOW" })
+	public KeyDistribution distribution;
+
+	Tree tree;
+	int[] keys;
+	int[] probes;
+	int next;
+
+	@Setup(Level.Trial)
+	public void build() {
+		Random rnd = new Random(42);
+		keys = distribution.initialKeys(size, rnd);
+		probes = distribution.probes(keys, PROBES, rnd);
+		tree = newTree();
+		for (int k : keys) {
+			tree.insert(k, Integer.toString(k));
+		}
+		next = 0;
+	}
+
+	/** returns the empty tree the trial is built on **/
+
+	Tree newTree() {
+		return new Tree();
+	}
+
+	/** returns the index (into keys) of the next probe **/
+
+	int nextProbe() {
+		int p = probes[next];
+		next = (next + 1) & (PROBES - 1);
+		return p;
+	}
+}
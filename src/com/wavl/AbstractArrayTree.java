@@ -0,0 +1,208 @@
+package com.wavl;
+
+import java.util.Arrays;
+
+/**
+ * AbstractArrayTree
+ *
+ * The storage shared by the trees that keep their nodes as indices into
+ * parallel arrays instead of Node objects (IntTree, LongTree, GenericTree):
+ * the links, ranks, sizes and info of node x are left[x], right[x] and so on.
+ * The WAVL rebalancing itself is AbstractIndexTree's.
+ *
+ * Nothing here looks at keys: subclasses keep them in an array of their own
+ * type, search for the place of a key, and then call allocate, link and
+ * remove to change the tree.
+ *
+ */
+public abstract class AbstractArrayTree<V> extends AbstractIndexTree {
+
+	static final int DEFAULT_CAPACITY = 16;
+
+	int[] left;
+	int[] right;
+	int[] parent;
+	int[] rank;
+	int[] size;
+	Object[] info;
+
+	AbstractArrayTree(int capacity) {
+		/** building an empty tree with room for capacity nodes **/
+
+		int length = Math.max(capacity, 1) + 1;
+		left = new int[length];
+		right = new int[length];
+		parent = new int[length];
+		rank = new int[length];
+		size = new int[length];
+		info = new Object[length];
+		rank[NIL] = -1;
+	}
+
+	/** grows the key array to length **/
+	abstract void growKeys(int length);
+
+	/** copies the key of node from to node to **/
+	abstract void moveKey(int from, int to);
+
+	/** drops any reference the key of a deleted node holds **/
+	abstract void clearKey(int node);
+
+	/**
+	 * public V min()
+	 *
+	 * Returns the info of the item with the smallest key in the tree, or null
+	 * if the tree is empty
+	 */
+
+	public V min() {
+		if (empty()) {
+			return null;
+		}
+		return info(min);
+	}
+
+	/**
+	 * public V max()
+	 *
+	 * Returns the info of the item with the largest key in the tree, or null if
+	 * the tree is empty
+	 */
+
+	public V max() {
+		if (empty()) {
+			return null;
+		}
+		return info(max);
+	}
+
+	/**
+	 * public V select(int i)
+	 *
+	 * Returns the info of the i'th smallest key, counting from 0 like
+	 * Tree.select, or null if there is no such key
+	 */
+
+	public V select(int i) {
+		if (i < 0 || i >= treeSize) {
+			return null;
+		}
+		return info(selectNode(i));
+	}
+
+	/**
+	 * public Object[] infoToArray() Returns an array which contains all info in
+	 * the tree, sorted by their respective keys, or an empty array if the tree
+	 * is empty.
+	 */
+
+	public Object[] infoToArray() {
+		Object[] arr = new Object[treeSize];
+		int node = min;
+		for (int i = 0; i < treeSize; i++) {
+			arr[i] = info[node];
+			node = successor(node);
+		}
+		return arr;
+	}
+
+	@SuppressWarnings("unchecked")
+	V info(int node) {
+		return (V) info[node];
+	}
+
+	int allocate(V i) {
+		/** returns a new, unlinked leaf holding i; the caller sets its key **/
+
+		int x = allocate();
+		info[x] = i;
+		return x;
+	}
+
+	@Override
+	final int left(int node) {
+		return left[node];
+	}
+
+	@Override
+	final void setLeft(int node, int son) {
+		left[node] = son;
+	}
+
+	@Override
+	final int right(int node) {
+		return right[node];
+	}
+
+	@Override
+	final void setRight(int node, int son) {
+		right[node] = son;
+	}
+
+	@Override
+	final int parent(int node) {
+		return parent[node];
+	}
+
+	@Override
+	final void setParent(int node, int p) {
+		parent[node] = p;
+	}
+
+	@Override
+	final int rank(int node) {
+		return rank[node];
+	}
+
+	@Override
+	final void setRank(int node, int r) {
+		rank[node] = r;
+	}
+
+	@Override
+	final int size(int node) {
+		return size[node];
+	}
+
+	@Override
+	final void setSize(int node, int s) {
+		size[node] = s;
+	}
+
+	@Override
+	final int capacity() {
+		return left.length;
+	}
+
+	@Override
+	final void moveItem(int from, int to) {
+		moveKey(from, to);
+		info[to] = info[from];
+	}
+
+	@Override
+	final void clearItem(int node) {
+		info[node] = null;
+		clearKey(node);
+	}
+
+	@Override
+	final void grow() {
+		/** doubles the capacity of all the arrays **/
+
+		int length = left.length * 2;
+		if (length < 0) {
+			length = Integer.MAX_VALUE - 8;
+			if (left.length == length) {
+				throw new IllegalStateException("tree is full");
+			}
+		}
+		left = Arrays.copyOf(left, length);
+		right = Arrays.copyOf(right, length);
+		parent = Arrays.copyOf(parent, length);
+		rank = Arrays.copyOf(rank, length);
+		size = Arrays.copyOf(size, length);
+		info = Arrays.copyOf(info, length);
+		growKeys(length);
+	}
+}
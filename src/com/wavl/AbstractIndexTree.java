@@ -0,0 +1,503 @@
+package com.wavl;
+
+/**
+ * AbstractIndexTree
+ *
+ * The WAVL machinery shared by the trees that address their nodes as int
+ * indices into some record storage instead of Node objects: the parallel
+ * arrays of AbstractArrayTree (IntTree, LongTree, GenericTree) and the
+ * off-heap chunks of OffHeapTree (MappedTree). Index 0 plays the virtual leaf
+ * (rank -1, size 0), and deleted indices go on a free list to be reused by
+ * the next insert.
+ *
+ * The rebalancing here reaches the records only through the accessors below,
+ * so each storage implements them once and every tree runs the same rules:
+ * Tree's, case for case, so insert and delete return the same numbers of
+ * rebalancing operations as Tree's for the same history.
+ * Nothing here looks at keys or info: subclasses keep them, search for the
+ * place of a key, and then call allocate, link and remove to change the tree.
+ *
+ */
+abstract class AbstractIndexTree {
+
+	static final int NIL = 0;
+
+	int root = NIL;
+	int min = NIL;
+	int max = NIL;
+	int treeSize = 0;
+	int used = 1; // index 0 is the virtual leaf
+	int free = NIL; // head of the free list, linked through left
+	private int rebalanceCounter = 0;
+
+	/** record accessors **/
+
+	abstract int left(int node);
+
+	abstract void setLeft(int node, int son);
+
+	abstract int right(int node);
+
+	abstract void setRight(int node, int son);
+
+	abstract int parent(int node);
+
+	abstract void setParent(int node, int p);
+
+	abstract int rank(int node);
+
+	abstract void setRank(int node, int r);
+
+	abstract int size(int node);
+
+	abstract void setSize(int node, int s);
+
+	/** returns the number of indices the storage has room for **/
+	abstract int capacity();
+
+	/** makes room for more indices **/
+	abstract void grow();
+
+	/** moves the item (key and info) of node from to node to; from is deleted next **/
+	abstract void moveItem(int from, int to);
+
+	/** drops the item of a deleted node **/
+	abstract void clearItem(int node);
+
+	/**
+	 * public boolean empty()
+	 *
+	 * returns true if and only if the tree is empty
+	 *
+	 */
+
+	public boolean empty() {
+		return treeSize == 0;
+	}
+
+	/**
+	 * public int size()
+	 *
+	 * Returns the number of nodes in the tree.
+	 *
+	 * precondition: none postcondition: none
+	 */
+
+	public int size() {
+		return treeSize;
+	}
+
+	int allocate() {
+		/**
+		 * returns a new, unlinked leaf; the caller sets its key and info 1.
+		 * reuse the head of the free list if there is one 2. else, take the
+		 * next unused index, growing the storage if needed
+		 **/
+
+		int x;
+		if (free != NIL) { // 1
+			x = free;
+			free = left(x);
+		} else { // 2
+			if (used == capacity()) {
+				grow();
+			}
+			x = used++;
+		}
+		setLeft(x, NIL);
+		setRight(x, NIL);
+		setParent(x, NIL);
+		setRank(x, 0);
+		setSize(x, 1);
+		return x;
+	}
+
+	int link(int x, int p, boolean asRight) {
+		/**
+		 * connects the new leaf x as a son of p (the root if p is NIL) and
+		 * returns the number of rebalancing operations 1. connect x 2. update
+		 * min and max if needed: a new left son of min is the new min, and a
+		 * new right son of max is the new max 3. increase the sizes on the path
+		 * to the root 4. rebalance
+		 **/
+
+		setParent(x, p); // 1
+		treeSize++;
+		if (p == NIL) {
+			root = x;
+			min = x;
+			max = x;
+			return 0;
+		}
+		if (asRight) {
+			setRight(p, x);
+			if (p == max) { // 2
+				max = x;
+			}
+		} else {
+			setLeft(p, x);
+			if (p == min) { // 2
+				min = x;
+			}
+		}
+		for (int a = p; a != NIL; a = parent(a)) { // 3
+			setSize(a, size(a) + 1);
+		}
+		rebalanceInsert(x); // 4
+		int temp = rebalanceCounter;
+		rebalanceCounter = 0;
+		return temp;
+	}
+
+	private void rebalanceInsert(int x) {
+		/**
+		 * x has the same rank as its parent p (a 0-child) 1. if p is a (0,1)
+		 * node-->promote p and continue with p 2. else p is a (0,2) node 2.1
+		 * if x's inner son is a 2-child-->single rotation, demote p 2.2 else
+		 * double rotation through the inner son, promote it and demote x and p
+		 **/
+
+		int p = parent(x);
+		while (p != NIL && rank(p) == rank(x)) {
+			boolean xLeft = left(p) == x;
+			int sibling = xLeft ? right(p) : left(p);
+			if (rank(p) - rank(sibling) == 1) { // 1
+				setRank(p, rank(p) + 1);
+				rebalanceCounter++;
+				x = p;
+				p = parent(p);
+				continue;
+			}
+			int inner = xLeft ? right(x) : left(x);
+			if (rank(x) - rank(inner) == 2) { // 2.1
+				rotate(x);
+				setRank(p, rank(p) - 1);
+				rebalanceCounter++;
+			} else { // 2.2
+				rotate(inner);
+				rotate(inner);
+				setRank(inner, rank(inner) + 1);
+				setRank(x, rank(x) - 1);
+				setRank(p, rank(p) - 1);
+				rebalanceCounter = rebalanceCounter + 2;
+			}
+			return;
+		}
+	}
+
+	int remove(int node) {
+		/**
+		 * deletes node and returns the number of rebalancing operations, the
+		 * same as Tree.delete for the same history 1. if it is a binary
+		 * node-->move its predecessor's item into it and delete the
+		 * predecessor instead, as Tree moves the predecessor into its place 2.
+		 * connect the only son (or the virtual leaf) to the parent 3. decrease
+		 * the sizes on the path to the root 4. update min and max if needed 5.
+		 * if node was binary-->fix the ranks of its new left spine, as Tree's
+		 * subTreeRank does 6. rebalance from the parent
+		 **/
+
+		int moved = NIL;
+		if (left(node) != NIL && right(node) != NIL) { // 1
+			int pred = localMax(left(node));
+			moveItem(pred, node);
+			if (min == pred) {
+				min = node;
+			}
+			moved = node;
+			node = pred;
+		}
+		int son = left(node) != NIL ? left(node) : right(node); // 2
+		int p = parent(node);
+		if (son != NIL) {
+			setParent(son, p);
+		}
+		if (p == NIL) {
+			root = son;
+		} else if (left(p) == node) {
+			setLeft(p, son);
+		} else {
+			setRight(p, son);
+		}
+		for (int a = p; a != NIL; a = parent(a)) { // 3
+			setSize(a, size(a) - 1);
+		}
+		treeSize--;
+		if (node == min) { // 4
+			min = localMin(root);
+		}
+		if (node == max) { // 4
+			max = localMax(root);
+		}
+		release(node);
+		int movedRank = moved == NIL ? 0 : rank(moved);
+		if (moved != NIL) { // 5
+			subTreeRank(moved);
+		}
+		if (p != NIL) { // 6
+			rebalanceDelete(p, moved, movedRank);
+		}
+		int temp = rebalanceCounter;
+		rebalanceCounter = 0;
+		return temp;
+	}
+
+	private void subTreeRank(int node) {
+		/**
+		 * Tree.subTreeRank 1. go down the left sons of node until the virtual
+		 * leaf or a (2,2) node that is not a leaf, whose rank stays 2. go back
+		 * up to node through the parents, setting each rank from its right son
+		 * and the rank below it 3. count every rank that changed
+		 **/
+
+		int cur = node;
+		int last = NIL;
+		while (cur != NIL && !(is22(cur) && !isLeaf(cur))) { // 1
+			last = cur;
+			cur = left(cur);
+		}
+		int r = rank(cur);
+		while (last != NIL) { // 2
+			int newRank = Math.max(rank(right(last)), r) + 1;
+			if (newRank != rank(last)) { // 3
+				setRank(last, newRank);
+				rebalanceCounter++;
+			}
+			r = newRank;
+			last = last == node ? NIL : parent(last);
+		}
+	}
+
+	private void rebalanceDelete(int node, int moved, int movedRank) {
+		/**
+		 * Tree's bounded rebalance walk after a delete, from the parent of the
+		 * removed position 1. fix node as in Tree.fixDelete 2. if node is the
+		 * binary node that took the predecessor's item (moved, of rank
+		 * movedRank before subTreeRank), its position is done once the sub
+		 * tree there has movedRank again 3. if the fix neither changed node's
+		 * rank nor moved it, nothing above it can need a fix, except that
+		 * subTreeRank may have changed the ranks of moved's left spine: then
+		 * go on from moved's left son 4. continue with the parent up to the
+		 * root
+		 **/
+
+		while (true) {
+			int r = rank(node);
+			int p = parent(node);
+			boolean atMovedLeft = moved != NIL && node == left(moved);
+			fixDelete(node); // 1
+			if (node == moved) { // 2
+				moved = NIL;
+				int top = parent(node) == p ? node : parent(node);
+				if (rank(top) == movedRank) {
+					return;
+				}
+				node = top;
+			} else if (!atMovedLeft && rank(node) == r && parent(node) == p) { // 3
+				if (moved == NIL) {
+					return;
+				}
+				node = left(moved);
+				continue;
+			}
+			if (parent(node) == NIL) { // 4
+				return;
+			}
+			node = parent(node);
+		}
+	}
+
+	private void fixDelete(int node) {
+		/**
+		 * Tree.fixDelete, the fixes for node itself, with its counting 1. if
+		 * node is a (2,2) leaf or a (2,3) or (3,2) node-->demote it (a leaf's
+		 * rank set to 0 counts once more) 2. if node is a (3,1) node 2.1 if
+		 * its right son is a (2,2) node-->demote both 2.2 if the right son is
+		 * a (1,1) or (2,1) node-->single rotation 2.3 if it is a (1,2)
+		 * node-->double rotation 3. the mirror of 2 for a (1,3) node
+		 **/
+
+		if ((isLeaf(node) && is22(node)) || isNode(node, 2, 3) || isNode(node, 3, 2)) { // 1
+			setRank(node, rank(node) - 1);
+			rebalanceCounter++;
+			if (isLeaf(node)) {
+				setRank(node, 0);
+				rebalanceCounter++;
+			}
+		}
+		if (isNode(node, 3, 1)) { // 2
+			int y = right(node);
+			if (is22(y)) { // 2.1
+				setRank(y, rank(y) - 1);
+				setRank(node, rank(node) - 1);
+				rebalanceCounter = rebalanceCounter + 2;
+			} else if (isNode(y, 1, 1) || isNode(y, 2, 1)) { // 2.2
+				singleRotationDelete(node, y);
+				rebalanceCounter++;
+			} else if (isNode(y, 1, 2)) { // 2.3
+				doubleRotationDelete(node, y, left(y));
+				rebalanceCounter = rebalanceCounter + 2;
+			}
+		}
+		if (isNode(node, 1, 3)) { // 3
+			int y = left(node);
+			if (is22(y)) {
+				setRank(node, rank(node) - 1);
+				setRank(y, rank(y) - 1);
+				rebalanceCounter = rebalanceCounter + 2;
+			} else if (isNode(y, 1, 1) || isNode(y, 1, 2)) {
+				singleRotationDelete(node, y);
+				rebalanceCounter++;
+			} else if (isNode(y, 2, 1)) {
+				doubleRotationDelete(node, y, right(y));
+				rebalanceCounter = rebalanceCounter + 2;
+			}
+		}
+	}
+
+	private void singleRotationDelete(int node, int y) {
+		/**
+		 * rotates node's son y above it, demotes node and promotes y; a (2,2)
+		 * leaf left behind is rebalanced up to the root, as in Tree
+		 **/
+
+		rotate(y);
+		setRank(node, rank(node) - 1);
+		setRank(y, rank(y) + 1);
+		if (is22(node) && isLeaf(node)) {
+			for (int a = node; a != NIL; a = parent(a)) {
+				fixDelete(a);
+			}
+		}
+	}
+
+	private void doubleRotationDelete(int node, int y, int inner) {
+		/**
+		 * rotates y's inner son above y and node, promotes it twice, demotes y
+		 * once and node twice
+		 **/
+
+		rotate(inner);
+		rotate(inner);
+		setRank(node, rank(node) - 2);
+		setRank(inner, rank(inner) + 2);
+		setRank(y, rank(y) - 1);
+	}
+
+	private boolean isNode(int node, int leftDiff, int rightDiff) {
+		/** returns true if node's rank differences are (leftDiff, rightDiff) **/
+
+		return rank(node) - rank(left(node)) == leftDiff && rank(node) - rank(right(node)) == rightDiff;
+	}
+
+	private boolean is22(int node) {
+		return isNode(node, 2, 2);
+	}
+
+	private boolean isLeaf(int node) {
+		return left(node) == NIL && right(node) == NIL;
+	}
+
+	private void rotate(int x) {
+		/**
+		 * rotates x above its parent p 1. x's inner son moves to p 2. p becomes
+		 * x's son 3. x is connected to p's former parent 4. updating the sizes
+		 * of p and x
+		 **/
+
+		int p = parent(x);
+		int g = parent(p);
+		if (left(p) == x) { // 1 + 2
+			int b = right(x);
+			setLeft(p, b);
+			if (b != NIL) {
+				setParent(b, p);
+			}
+			setRight(x, p);
+		} else {
+			int b = left(x);
+			setRight(p, b);
+			if (b != NIL) {
+				setParent(b, p);
+			}
+			setLeft(x, p);
+		}
+		setParent(p, x);
+		setParent(x, g); // 3
+		if (g == NIL) {
+			root = x;
+		} else if (left(g) == p) {
+			setLeft(g, x);
+		} else {
+			setRight(g, x);
+		}
+		setSize(x, size(p)); // 4
+		setSize(p, size(left(p)) + size(right(p)) + 1);
+	}
+
+	int selectNode(int i) {
+		/** returns the node of the i'th smallest key, for 0 <= i < size() **/
+
+		int node = root;
+		while (true) {
+			int leftSize = size(left(node));
+			if (i == leftSize) {
+				return node;
+			} else if (i < leftSize) {
+				node = left(node);
+			} else {
+				i = i - leftSize - 1;
+				node = right(node);
+			}
+		}
+	}
+
+	int successor(int node) {
+		/**
+		 * 1. if node has a right son-->the minimum of the right sub tree 2.
+		 * else, go up as long as node is a right son
+		 **/
+
+		if (right(node) != NIL) { // 1
+			return localMin(right(node));
+		}
+		int p = parent(node); // 2
+		while (p != NIL && right(p) == node) {
+			node = p;
+			p = parent(p);
+		}
+		return p;
+	}
+
+	int localMin(int node) {
+		/** returns the min in node's sub tree (NIL for an empty one) **/
+
+		if (node == NIL) {
+			return NIL;
+		}
+		while (left(node) != NIL) {
+			node = left(node);
+		}
+		return node;
+	}
+
+	int localMax(int node) {
+		/** returns the max in node's sub tree (NIL for an empty one) **/
+
+		if (node == NIL) {
+			return NIL;
+		}
+		while (right(node) != NIL) {
+			node = right(node);
+		}
+		return node;
+	}
+
+	private void release(int x) {
+		/** puts x on the free list **/
+
+		clearItem(x);
+		setLeft(x, free);
+		free = x;
+	}
+}
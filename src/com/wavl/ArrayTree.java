@@ -0,0 +1,54 @@
+package com.wavl;
+
+/**
+ * ArrayTree
+ *
+ * A WAVL Tree with distinct integer keys and String info and the same public
+ * API as Tree, that keeps its nodes as indices into parallel arrays instead of
+ * Node objects (an IntTree of Strings). The API includes the return values:
+ * for the same history of inserts and deletes, insert and delete return the
+ * same numbers of rebalancing operations as Tree's.
+ *
+ */
+public class ArrayTree extends IntTree<String> {
+
+	public ArrayTree() {
+		super();
+	}
+
+	public ArrayTree(int capacity) {
+		super(capacity);
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * Returns the value of the i'th smallest key, counting from 0 like
+	 * Tree.select (returns "-1" if there is no such key)
+	 */
+
+	@Override
+	public String select(int i) {
+		if (i < 0 || i >= treeSize) {
+			return "-1";
+		}
+		return super.select(i);
+	}
+
+	/**
+	 * public String[] infoToArray() Returns an array which contains all info in
+	 * the tree, sorted by their respective keys, or an empty array if the tree
+	 * is empty.
+	 */
+
+	@Override
+	public String[] infoToArray() {
+		String[] arr = new String[treeSize];
+		int node = min;
+		for (int i = 0; i < treeSize; i++) {
+			arr[i] = info(node);
+			node = successor(node);
+		}
+		return arr;
+	}
+}
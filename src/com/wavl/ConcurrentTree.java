@@ -0,0 +1,580 @@
+package com.wavl;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrentTree
+ *
+ * A thread safe WAVL Tree with distinct integer keys and String info, whose
+ * reads never take a lock. It follows the optimistic version scheme of Bronson
+ * et al., "A Practical Concurrent Binary Search Tree": every node has a
+ * version, and a change that moves keys out of a node's sub tree (the node
+ * going down in a rotation, or a node on the path a deleted node's
+ * predecessor is taken from) marks the node as shrinking while it runs and
+ * then bumps its version. A search reads a node's version before following a
+ * son and checks it again after, so it either sees a consistent path or goes
+ * back one level and tries again. Nodes that only gain keys are never marked,
+ * so most changes don't disturb the searches running past them.
+ *
+ * search, min, max, size and empty never block. insert and delete hold one
+ * writer lock, which also covers the rank and size fields, so select and
+ * keysToArray take it too.
+ *
+ */
+public class ConcurrentTree {
+
+	/** the version bits: a node is being shrunk, or has left the tree **/
+	private static final long SHRINKING = 1;
+	private static final long UNLINKED = 2;
+	/** the step a change adds to a version **/
+	private static final long CHANGE = 4;
+
+	/** returned by a search step that has to be tried again from its parent **/
+	private static final Object RETRY = new Object();
+
+	/** the sentinel, whose right son is the root; its version never changes **/
+	private final Node sentinel = new Node(0, null, null);
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile Node min;
+	private volatile Node max;
+	private volatile int treeSize;
+	private int rebalanceCounter;
+
+	/**
+	 * public boolean empty()
+	 *
+	 * returns true if and only if the tree is empty
+	 *
+	 */
+
+	public boolean empty() {
+		return treeSize == 0;
+	}
+
+	/**
+	 * public int size()
+	 *
+	 * Returns the number of nodes in the tree.
+	 *
+	 */
+
+	public int size() {
+		return treeSize;
+	}
+
+	/**
+	 * public String search(int k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null. never blocks: if a writer changes the path
+	 * under it, the search retries the part of the path that changed.
+	 */
+
+	public String search(int k) {
+		while (true) {
+			Object result = attemptSearch(k, sentinel, true, sentinel.version);
+			if (result != RETRY) {
+				return (String) result;
+			}
+		}
+	}
+
+	private Object attemptSearch(int k, Node node, boolean right, long nodeVersion) {
+		/**
+		 * searches for k in node's son on the given side, where node had
+		 * nodeVersion when we decided k belongs under it 1. no son-->k is not
+		 * there, if node hasn't changed since 2. found k 3. if the son is
+		 * being shrunk-->wait for it, then read the son again 4. if node
+		 * changed (or the son did)-->go back to node's parent, or read the son
+		 * again 5. else, continue in the son; if that has to retry, read the
+		 * son again
+		 **/
+
+		while (true) {
+			Node child = right ? node.right : node.left;
+			if (child == null) { // 1
+				return node.version == nodeVersion ? null : RETRY;
+			}
+			if (k == child.key) { // 2
+				return child.value;
+			}
+			long childVersion = child.version;
+			if ((childVersion & SHRINKING) != 0) { // 3
+				waitWhileShrinking(child);
+				if (node.version != nodeVersion) {
+					return RETRY;
+				}
+			} else if (child != (right ? node.right : node.left)) { // 4
+				if (node.version != nodeVersion) {
+					return RETRY;
+				}
+			} else if (node.version != nodeVersion) { // 4
+				return RETRY;
+			} else { // 5
+				Object result = attemptSearch(k, child, k > child.key, childVersion);
+				if (result != RETRY) {
+					return result;
+				}
+			}
+		}
+	}
+
+	private static void waitWhileShrinking(Node node) {
+		while ((node.version & SHRINKING) != 0) {
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * public String min()
+	 *
+	 * Returns the info of the item with the smallest key in the tree, or null
+	 * if the tree is empty
+	 */
+
+	public String min() {
+		Node node = min;
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * public String max()
+	 *
+	 * Returns the info of the item with the largest key in the tree, or null if
+	 * the tree is empty
+	 */
+
+	public String max() {
+		Node node = max;
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree. returns the
+	 * number of rebalancing operations, or 0 if no rebalancing operations were
+	 * necessary. returns -1 if an item with key k already exists in the tree.
+	 */
+
+	public int insert(int k, String i) {
+		/**
+		 * 1. search for the parent of the new node 2. if key exists returns -1
+		 * 3. connect the new leaf (it is complete before a search can see it)
+		 * 4. update the sizes, min and max 5. rebalance
+		 **/
+
+		writeLock.lock();
+		try {
+			Node p = sentinel; // 1
+			Node next = sentinel.right;
+			while (next != null) {
+				if (k == next.key) { // 2
+					return -1;
+				}
+				p = next;
+				next = k < next.key ? next.left : next.right;
+			}
+			Node x = new Node(k, i, p);
+			if (p == sentinel || k > p.key) { // 3
+				p.right = x;
+			} else {
+				p.left = x;
+			}
+			for (Node a = p; a != sentinel; a = a.parent) { // 4
+				a.size++;
+			}
+			treeSize = treeSize + 1;
+			if (min == null || k < min.key) {
+				min = x;
+			}
+			if (max == null || k > max.key) {
+				max = x;
+			}
+			rebalanceInsert(x); // 5
+			int temp = rebalanceCounter;
+			rebalanceCounter = 0;
+			return temp;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * public int delete(int k)
+	 *
+	 * deletes an item with key k from the binary tree, if it is there. returns
+	 * the number of rebalancing operations, or 0 if no rebalancing operations
+	 * were needed. returns -1 if an item with key k was not found in the tree.
+	 */
+
+	public int delete(int k) {
+		/**
+		 * 1. search for the node 2. update min and max before the node leaves
+		 * 3. if it is a binary node-->its predecessor takes its place 4. else,
+		 * connect its only son (or nothing) to its parent 5. decrease the
+		 * sizes on the path to the root 6. rebalance
+		 **/
+
+		writeLock.lock();
+		try {
+			Node d = sentinel.right; // 1
+			while (d != null && d.key != k) {
+				d = k < d.key ? d.left : d.right;
+			}
+			if (d == null) {
+				return -1;
+			}
+			if (d == min) { // 2
+				min = successor(d);
+			}
+			if (d == max) {
+				max = predecessor(d);
+			}
+			Node p;
+			Node x;
+			boolean xLeft;
+			if (d.left != null && d.right != null) { // 3
+				Node pred = d.left;
+				while (pred.right != null) {
+					pred = pred.right;
+				}
+				if (pred == d.left) {
+					p = pred;
+					xLeft = true;
+				} else {
+					p = pred.parent;
+					xLeft = false;
+				}
+				x = pred.left;
+				replaceWithPredecessor(d, pred);
+			} else { // 4
+				x = d.left != null ? d.left : d.right;
+				p = d.parent;
+				xLeft = p.left == d;
+				if (x != null) {
+					x.parent = p;
+				}
+				if (xLeft) {
+					p.left = x;
+				} else {
+					p.right = x;
+				}
+				d.version = (d.version + CHANGE) | UNLINKED;
+			}
+			for (Node a = p; a != sentinel; a = a.parent) { // 5
+				a.size--;
+			}
+			treeSize = treeSize - 1;
+			rebalanceDelete(p, x, xLeft); // 6
+			int temp = rebalanceCounter;
+			rebalanceCounter = 0;
+			return temp;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void replaceWithPredecessor(Node d, Node pred) {
+		/**
+		 * moves pred (the max of d's left sub tree) into d's place 1. mark d,
+		 * and every node between d and pred, as shrinking: pred's key leaves
+		 * their sub trees 2. take pred out, its left son takes its place 3.
+		 * pred takes d's sons, rank and size 4. connect pred to d's parent 5.
+		 * d is unlinked, and the path nodes are done shrinking
+		 **/
+
+		shrink(d); // 1
+		for (Node a = d.left; a != pred; a = a.right) {
+			shrink(a);
+		}
+		Node pp = pred.parent;
+		if (pred != d.left) { // 2
+			pp.right = pred.left;
+			if (pred.left != null) {
+				pred.left.parent = pp;
+			}
+			pred.left = d.left; // 3
+			d.left.parent = pred;
+		}
+		pred.right = d.right;
+		d.right.parent = pred;
+		pred.rank = d.rank;
+		pred.size = d.size;
+		Node g = d.parent; // 4
+		pred.parent = g;
+		if (g.right == d) {
+			g.right = pred;
+		} else {
+			g.left = pred;
+		}
+		d.version = ((d.version & ~SHRINKING) + CHANGE) | UNLINKED; // 5
+		if (pp != d) {
+			for (Node a = pp; a != pred; a = a.parent) {
+				unshrink(a);
+			}
+		}
+	}
+
+	private void rebalanceInsert(Node x) {
+		/**
+		 * x has the same rank as its parent p (a 0-child) 1. if p is a (0,1)
+		 * node-->promote p and continue with p 2. else p is a (0,2) node 2.1
+		 * if x's inner son is a 2-child-->single rotation, demote p 2.2 else
+		 * double rotation through the inner son, promote it and demote x and p
+		 **/
+
+		Node p = x.parent;
+		while (p != sentinel && p.rank == x.rank) {
+			boolean xLeft = p.left == x;
+			Node sibling = xLeft ? p.right : p.left;
+			if (p.rank - rank(sibling) == 1) { // 1
+				p.rank++;
+				rebalanceCounter++;
+				x = p;
+				p = p.parent;
+				continue;
+			}
+			Node inner = xLeft ? x.right : x.left;
+			if (x.rank - rank(inner) == 2) { // 2.1
+				rotate(x);
+				p.rank--;
+				rebalanceCounter++;
+			} else { // 2.2
+				rotate(inner);
+				rotate(inner);
+				inner.rank++;
+				x.rank--;
+				p.rank--;
+				rebalanceCounter = rebalanceCounter + 2;
+			}
+			return;
+		}
+	}
+
+	private void rebalanceDelete(Node p, Node x, boolean xLeft) {
+		/**
+		 * x is the (possibly missing) son of p that lost a node 1. if p is a
+		 * (2,2) leaf-->demote it and continue with its parent 2. while x is a
+		 * 3-child of p, with sibling y 2.1 if y is a 2-child-->demote p 2.2 if
+		 * y is a (2,2) node-->demote p and y 2.3 else, if y's outer son is a
+		 * 1-child-->single rotation, promote y and demote p (twice if p became
+		 * a leaf) 2.4 else, double rotation through y's inner son, promote it
+		 * twice, demote y once and p twice
+		 **/
+
+		if (p == sentinel) {
+			return;
+		}
+		if (p.left == null && p.right == null && p.rank == 1) { // 1
+			p.rank = 0;
+			rebalanceCounter++;
+			x = p;
+			p = p.parent;
+			xLeft = p.left == x;
+		}
+		while (p != sentinel && p.rank - rank(x) == 3) { // 2
+			Node y = xLeft ? p.right : p.left;
+			if (p.rank - rank(y) == 2) { // 2.1
+				p.rank--;
+				rebalanceCounter++;
+			} else {
+				Node outer = xLeft ? y.right : y.left;
+				Node inner = xLeft ? y.left : y.right;
+				if (y.rank - rank(outer) == 2 && y.rank - rank(inner) == 2) { // 2.2
+					p.rank--;
+					y.rank--;
+					rebalanceCounter = rebalanceCounter + 2;
+				} else if (y.rank - rank(outer) == 1) { // 2.3
+					rotate(y);
+					y.rank++;
+					p.rank--;
+					rebalanceCounter++;
+					if (p.left == null && p.right == null) {
+						p.rank = 0;
+						rebalanceCounter++;
+					}
+					return;
+				} else { // 2.4
+					rotate(inner);
+					rotate(inner);
+					inner.rank = inner.rank + 2;
+					y.rank--;
+					p.rank = p.rank - 2;
+					rebalanceCounter = rebalanceCounter + 2;
+					return;
+				}
+			}
+			x = p;
+			p = p.parent;
+			xLeft = p.left == x;
+		}
+	}
+
+	private void rotate(Node x) {
+		/**
+		 * rotates x above its parent p. p goes down and loses x and x's outer
+		 * sub tree, so it is marked shrinking for the duration 1. x's inner
+		 * son moves to p 2. p becomes x's son 3. x is connected to p's former
+		 * parent 4. updating the sizes of p and x
+		 **/
+
+		Node p = x.parent;
+		Node g = p.parent;
+		shrink(p);
+		if (p.left == x) { // 1 + 2
+			Node b = x.right;
+			p.left = b;
+			if (b != null) {
+				b.parent = p;
+			}
+			x.right = p;
+		} else {
+			Node b = x.left;
+			p.right = b;
+			if (b != null) {
+				b.parent = p;
+			}
+			x.left = p;
+		}
+		p.parent = x;
+		x.parent = g; // 3
+		if (g.right == p) {
+			g.right = x;
+		} else {
+			g.left = x;
+		}
+		x.size = p.size; // 4
+		p.size = size(p.left) + size(p.right) + 1;
+		unshrink(p);
+	}
+
+	private static void shrink(Node node) {
+		node.version = node.version | SHRINKING;
+	}
+
+	private static void unshrink(Node node) {
+		node.version = (node.version & ~SHRINKING) + CHANGE;
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * Returns the info of the i'th smallest key, counting from 0 like
+	 * Tree.select (returns "-1" if there is no such key). takes the writer
+	 * lock, since the sub tree sizes belong to the writers.
+	 */
+
+	public String select(int i) {
+		writeLock.lock();
+		try {
+			if (i < 0 || i >= treeSize) {
+				return "-1";
+			}
+			Node node = sentinel.right;
+			while (true) {
+				int leftSize = size(node.left);
+				if (i == leftSize) {
+					return node.value;
+				} else if (i < leftSize) {
+					node = node.left;
+				} else {
+					i = i - leftSize - 1;
+					node = node.right;
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree, or an empty
+	 * array if the tree is empty. takes the writer lock.
+	 */
+
+	public int[] keysToArray() {
+		writeLock.lock();
+		try {
+			int[] arr = new int[treeSize];
+			int i = 0;
+			for (Node node = min; node != null; node = successor(node)) {
+				arr[i++] = node.key;
+			}
+			return arr;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private Node successor(Node node) {
+		/** the next node in key order, or null (under the writer lock) **/
+
+		if (node.right != null) {
+			node = node.right;
+			while (node.left != null) {
+				node = node.left;
+			}
+			return node;
+		}
+		Node p = node.parent;
+		while (p != sentinel && p.right == node) {
+			node = p;
+			p = p.parent;
+		}
+		return p == sentinel ? null : p;
+	}
+
+	private Node predecessor(Node node) {
+		/** the previous node in key order, or null (under the writer lock) **/
+
+		if (node.left != null) {
+			node = node.left;
+			while (node.right != null) {
+				node = node.right;
+			}
+			return node;
+		}
+		Node p = node.parent;
+		while (p != sentinel && p.left == node) {
+			node = p;
+			p = p.parent;
+		}
+		return p == sentinel ? null : p;
+	}
+
+	private static int rank(Node node) {
+		return node == null ? -1 : node.rank;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * a node of a ConcurrentTree. key and value never change; the sons and
+	 * the version are what searches read, so they are volatile. parent, rank
+	 * and size are only used under the writer lock.
+	 **/
+
+	static final class Node {
+
+		final int key;
+		final String value;
+		volatile Node left;
+		volatile Node right;
+		volatile long version;
+		Node parent;
+		int rank;
+		int size;
+
+		Node(int key, String value, Node parent) {
+			this.key = key;
+			this.value = value;
+			this.parent = parent;
+			this.size = 1;
+		}
+	}
+}
@@ -0,0 +1,299 @@
+package com.wavl;
+
+import java.util.concurrent.locks.StampedLock;
+
+import com.wavl.Tree.IWAVLNode;
+
+/**
+ * ConcurrentTreeView
+ *
+ * A thread safe view of a Tree under one StampedLock: insert and delete take
+ * the write lock, and search, select, min, max and size first try an
+ * optimistic read, which takes no lock at all. An optimistic read walks the
+ * tree through the IWAVLNode getters, can see a writer's half-done rotation,
+ * and so is bounded by the height a WAVL tree can have and by catching what
+ * a torn read can throw. Its answer is only returned once the stamp
+ * validates. After OPTIMISTIC_ATTEMPTS failed tries the read takes the read
+ * lock.
+ *
+ * All access to the tree has to go through the view once it is wrapped.
+ *
+ */
+public class ConcurrentTreeView {
+
+	/** optimistic tries before a read falls back to the read lock **/
+	static final int OPTIMISTIC_ATTEMPTS = 3;
+
+	/**
+	 * no WAVL tree of at most 2^31 nodes is higher than 2 log n, so a walk
+	 * longer than this has followed a half-done rotation
+	 **/
+	private static final int MAX_HEIGHT = 64;
+
+	/** returned by an optimistic walk that saw an inconsistent tree **/
+	static final String TORN = new String("torn");
+
+	private final Tree tree;
+	private final StampedLock lock = new StampedLock();
+
+	public ConcurrentTreeView() {
+		this(new Tree());
+	}
+
+	/**
+	 * public ConcurrentTreeView(Tree tree)
+	 *
+	 * wraps tree, which must not have a search cache: searches run side by
+	 * side under the read lock, and a cached search writes to the tree
+	 *
+	 * throws IllegalArgumentException if tree has a search cache
+	 */
+
+	public ConcurrentTreeView(Tree tree) {
+		if (tree.getSearchCacheCapacity() != 0) {
+			throw new IllegalArgumentException("a tree with a search cache can't be shared by readers");
+		}
+		this.tree = tree;
+	}
+
+	/**
+	 * public String search(int k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+
+	public String search(int k) {
+		for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp == 0) {
+				continue;
+			}
+			String result = walkSearch(tree, k);
+			if (result != TORN && lock.validate(stamp)) {
+				return result;
+			}
+		}
+		long stamp = lock.readLock(); // the same walk, which writes nothing
+		try {
+			return walkSearch(tree, k);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	static String walkSearch(Tree tree, int k) {
+		/**
+		 * the search loop of Tree, bounded and tolerant of a torn tree; shared
+		 * with ShardedTree. Unlike Tree.search it never touches a finger or a
+		 * search cache, so readers under the read lock don't race.
+		 **/
+
+		try {
+			IWAVLNode node = tree.getRoot();
+			for (int steps = 0; node != null && node.isRealNode(); steps++) {
+				if (steps > MAX_HEIGHT) {
+					return TORN;
+				}
+				int key = node.getKey();
+				if (k == key) {
+					return node.getValue();
+				}
+				node = k < key ? node.getLeft() : node.getRight();
+			}
+			return null;
+		} catch (RuntimeException e) {
+			return TORN;
+		}
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * Returns the info of the i'th smallest key, counting from 0 like
+	 * Tree.select (returns "-1" if there is no such key)
+	 */
+
+	public String select(int i) {
+		if (!tree.hasOrderStatistics()) {
+			throw new UnsupportedOperationException("select needs a tree with order statistics");
+		}
+		for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp == 0) {
+				continue;
+			}
+			String result = walkSelect(i);
+			if (result != TORN && lock.validate(stamp)) {
+				return result;
+			}
+		}
+		long stamp = lock.readLock();
+		try {
+			return tree.select(i);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private String walkSelect(int i) {
+		/** the select loop of Tree, bounded and tolerant of a torn tree **/
+
+		try {
+			if (i < 0 || i >= tree.size()) {
+				return "-1";
+			}
+			IWAVLNode node = tree.getRoot();
+			for (int steps = 0; node != null && node.isRealNode(); steps++) {
+				if (steps > MAX_HEIGHT) {
+					return TORN;
+				}
+				IWAVLNode left = node.getLeft();
+				int leftSize = left == null ? 0 : left.getSubtreeSize();
+				if (i == leftSize) {
+					return node.getValue();
+				} else if (i < leftSize) {
+					node = left;
+				} else {
+					i = i - leftSize - 1;
+					node = node.getRight();
+				}
+			}
+			return TORN;
+		} catch (RuntimeException e) {
+			return TORN;
+		}
+	}
+
+	/**
+	 * public String min()
+	 *
+	 * Returns the info of the item with the smallest key in the tree, or null
+	 * if the tree is empty
+	 */
+
+	public String min() {
+		long stamp = lock.tryOptimisticRead();
+		String result = tree.min();
+		if (stamp != 0 && lock.validate(stamp)) {
+			return result;
+		}
+		stamp = lock.readLock();
+		try {
+			return tree.min();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public String max()
+	 *
+	 * Returns the info of the item with the largest key in the tree, or null if
+	 * the tree is empty
+	 */
+
+	public String max() {
+		long stamp = lock.tryOptimisticRead();
+		String result = tree.max();
+		if (stamp != 0 && lock.validate(stamp)) {
+			return result;
+		}
+		stamp = lock.readLock();
+		try {
+			return tree.max();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public int size()
+	 *
+	 * Returns the number of nodes in the tree.
+	 */
+
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		int result = tree.size();
+		if (stamp != 0 && lock.validate(stamp)) {
+			return result;
+		}
+		stamp = lock.readLock();
+		try {
+			return tree.size();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public boolean empty()
+	 *
+	 * returns true if and only if the tree is empty
+	 */
+
+	public boolean empty() {
+		return size() == 0;
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 *
+	 * Tree.insert under the write lock
+	 */
+
+	public int insert(int k, String i) {
+		long stamp = lock.writeLock();
+		try {
+			return tree.insert(k, i);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public int delete(int k)
+	 *
+	 * Tree.delete under the write lock
+	 */
+
+	public int delete(int k) {
+		long stamp = lock.writeLock();
+		try {
+			return tree.delete(k);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 *
+	 * Tree.keysToArray under the read lock
+	 */
+
+	public int[] keysToArray() {
+		long stamp = lock.readLock();
+		try {
+			return tree.keysToArray();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 *
+	 * Tree.infoToArray under the read lock
+	 */
+
+	public String[] infoToArray() {
+		long stamp = lock.readLock();
+		try {
+			return tree.infoToArray();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+}
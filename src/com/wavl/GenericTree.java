@@ -0,0 +1,160 @@
+package com.wavl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * GenericTree
+ *
+ * A WAVL Tree with distinct keys of any type, ordered by a Comparator (or by
+ * their natural ordering), and info of any type, kept in parallel arrays (see
+ * AbstractArrayTree). For int and long keys, IntTree and LongTree avoid
+ * boxing them.
+ *
+ */
+public class GenericTree<K, V> extends AbstractArrayTree<V> {
+
+	private Object[] key;
+	private final Comparator<? super K> comparator;
+
+	public GenericTree() {
+		this(null);
+	}
+
+	public GenericTree(Comparator<? super K> comparator) {
+		this(comparator, DEFAULT_CAPACITY);
+	}
+
+	public GenericTree(Comparator<? super K> comparator, int capacity) {
+		/** a null comparator orders keys by their natural ordering **/
+
+		super(capacity);
+		this.comparator = comparator;
+		key = new Object[left.length];
+	}
+
+	/**
+	 * public V search(K k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+
+	public V search(K k) {
+		int node = find(k);
+		if (node == NIL) {
+			return null;
+		}
+		return info(node);
+	}
+
+	private int find(K k) {
+		/** returns the node with key k, or NIL if there is none **/
+
+		int node = root;
+		while (node != NIL) {
+			int c = compare(k, node);
+			if (c == 0) {
+				return node;
+			}
+			node = c > 0 ? right[node] : left[node];
+		}
+		return NIL;
+	}
+
+	/**
+	 * public int insert(K k, V i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree. the tree must
+	 * remain valid (keep its invariants). returns the number of rebalancing
+	 * operations, or 0 if no rebalancing operations were necessary. returns -1
+	 * if an item with key k already exists in the tree.
+	 */
+
+	public int insert(K k, V i) {
+		/**
+		 * 1. search for the parent of the new node, or return -1 if k exists
+		 * 2. connect a new leaf with key k to it
+		 **/
+
+		int p = NIL;
+		int c = 0;
+		int node = root;
+		while (node != NIL) { // 1
+			c = compare(k, node);
+			if (c == 0) {
+				return -1;
+			}
+			p = node;
+			node = c > 0 ? right[node] : left[node];
+		}
+		if (p == NIL) {
+			compare(k, k); // type (and null) check for the first key
+		}
+		int x = allocate(i); // 2
+		key[x] = k;
+		return link(x, p, c > 0);
+	}
+
+	/**
+	 * public int delete(K k)
+	 *
+	 * deletes an item with key k from the binary tree, if it is there; the tree
+	 * must remain valid (keep its invariants). returns the number of
+	 * rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+
+	public int delete(K k) {
+		int node = find(k);
+		if (node == NIL) {
+			return -1;
+		}
+		return remove(node);
+	}
+
+	/**
+	 * public Object[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree, or an empty
+	 * array if the tree is empty.
+	 */
+
+	public Object[] keysToArray() {
+		Object[] arr = new Object[treeSize];
+		int node = min;
+		for (int i = 0; i < treeSize; i++) {
+			arr[i] = key[node];
+			node = successor(node);
+		}
+		return arr;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(K k, int node) {
+		return compare(k, (K) key[node]);
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(K a, K b) {
+		if (comparator != null) {
+			return comparator.compare(a, b);
+		}
+		return ((Comparable<? super K>) a).compareTo(b);
+	}
+
+	@Override
+	void growKeys(int length) {
+		key = Arrays.copyOf(key, length);
+	}
+
+	@Override
+	void moveKey(int from, int to) {
+		key[to] = key[from];
+	}
+
+	@Override
+	void clearKey(int node) {
+		key[node] = null;
+	}
+}
@@ -0,0 +1,127 @@
+package com.wavl;
+
+import java.util.Arrays;
+
+/**
+ * IntTree
+ *
+ * A WAVL Tree with distinct int keys and info of any type, kept in parallel
+ * arrays (see AbstractArrayTree). Keys are stored unboxed.
+ *
+ */
+public class IntTree<V> extends AbstractArrayTree<V> {
+
+	private int[] key;
+
+	public IntTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public IntTree(int capacity) {
+		super(capacity);
+		key = new int[left.length];
+	}
+
+	/**
+	 * public V search(int k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+
+	public V search(int k) {
+		int node = find(k);
+		if (node == NIL) {
+			return null;
+		}
+		return info(node);
+	}
+
+	private int find(int k) {
+		/** returns the node with key k, or NIL if there is none **/
+
+		int node = root;
+		while (node != NIL && key[node] != k) {
+			node = k > key[node] ? right[node] : left[node];
+		}
+		return node;
+	}
+
+	/**
+	 * public int insert(int k, V i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree. the tree must
+	 * remain valid (keep its invariants). returns the number of rebalancing
+	 * operations, or 0 if no rebalancing operations were necessary. returns -1
+	 * if an item with key k already exists in the tree.
+	 */
+
+	public int insert(int k, V i) {
+		/**
+		 * 1. search for the parent of the new node, or return -1 if k exists
+		 * 2. connect a new leaf with key k to it
+		 **/
+
+		int p = NIL;
+		int node = root;
+		while (node != NIL) { // 1
+			if (key[node] == k) {
+				return -1;
+			}
+			p = node;
+			node = k > key[node] ? right[node] : left[node];
+		}
+		int x = allocate(i); // 2
+		key[x] = k;
+		return link(x, p, p != NIL && k > key[p]);
+	}
+
+	/**
+	 * public int delete(int k)
+	 *
+	 * deletes an item with key k from the binary tree, if it is there; the tree
+	 * must remain valid (keep its invariants). returns the number of
+	 * rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+
+	public int delete(int k) {
+		int node = find(k);
+		if (node == NIL) {
+			return -1;
+		}
+		return remove(node);
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree, or an empty
+	 * array if the tree is empty.
+	 */
+
+	public int[] keysToArray() {
+		int[] arr = new int[treeSize];
+		int node = min;
+		for (int i = 0; i < treeSize; i++) {
+			arr[i] = key[node];
+			node = successor(node);
+		}
+		return arr;
+	}
+
+	@Override
+	void growKeys(int length) {
+		key = Arrays.copyOf(key, length);
+	}
+
+	@Override
+	void moveKey(int from, int to) {
+		key[to] = key[from];
+	}
+
+	@Override
+	void clearKey(int node) {
+		/** an int key holds no reference **/
+	}
+}
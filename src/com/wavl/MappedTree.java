@@ -0,0 +1,348 @@
+package com.wavl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * MappedTree
+ *
+ * A persistent OffHeapTree: the node records are memory-mapped from a file, so
+ * reopening an index maps the file back instead of replaying its inserts.
+ * The tree is kept in three files:
+ *
+ * path - a header followed by the record chunks, little endian on any host
+ * path.values - the info strings, appended as [int length][UTF-8 bytes]
+ * path.redo - the pages the last commit() changed, until they are in path
+ *
+ * The chunks are mapped copy on write (MapMode.PRIVATE), so inserts and
+ * deletes never touch the file: they only mark the PAGE sized pages of
+ * records they change. commit() writes those pages and the bookkeeping to
+ * the redo log and forces it, then flips the header's state to REDO, which
+ * is the atomic step: from there on the commit is done, and copying the pages
+ * into path (again, if the process died while doing it) only repeats it. A
+ * commit costs the pages changed since the one before, not the file.
+ *
+ * If the process dies before the flip, path is still the last commit, and
+ * the next open cuts the values file back to the length that commit recorded.
+ * Opening a cleanly committed file only maps it.
+ *
+ * The values file is append only: the space of deleted info is not reused.
+ *
+ */
+public class MappedTree extends OffHeapTree implements Closeable {
+
+	private static final int MAGIC = 0x5741564C; // "WAVL"
+	private static final int VERSION = 2;
+	private static final int LITTLE_ENDIAN = 1;
+	private static final int CLEAN = 1;
+	private static final int REDO = 2;
+
+	/** the layout of the header; the bookkeeping is the same in the redo log **/
+	private static final int HEADER = 4096;
+	private static final int H_MAGIC = 0;
+	private static final int H_VERSION = 4;
+	private static final int H_ORDER = 8;
+	private static final int H_STATE = 12;
+	private static final int H_ROOT = 16;
+	private static final int H_MIN = 20;
+	private static final int H_MAX = 24;
+	private static final int H_SIZE = 28;
+	private static final int H_USED = 32;
+	private static final int H_FREE = 36;
+	private static final int H_CHUNKS = 40;
+	private static final int H_VALUES_END = 48; // a long
+	private static final int H_PAGES = 56; // pages in the redo log
+	private static final int BOOKKEEPING = 64;
+
+	/** the unit of change tracking: 128 records **/
+	static final int PAGE = 4096;
+	private static final int PAGE_SHIFT = 7;
+	private static final int PAGES_PER_CHUNK = CHUNK_RECORDS >> PAGE_SHIFT;
+
+	private static final long CHUNK_BYTES = (long) CHUNK_RECORDS * RECORD;
+
+	private final FileChannel records;
+	private final FileChannel values;
+	private final FileChannel redo;
+	private final MappedByteBuffer header;
+	private final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+	/** the pages written since the last commit **/
+	private final BitSet dirtyPages = new BitSet();
+	private long valuesEnd;
+
+	private MappedTree(Path path) throws IOException {
+		super(false);
+		this.records = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.values = FileChannel.open(sibling(path, ".values"), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.redo = FileChannel.open(sibling(path, ".redo"), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.header = records.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getInt(H_MAGIC) == 0) {
+			create();
+		} else {
+			load();
+		}
+	}
+
+	/**
+	 * public static MappedTree open(Path path)
+	 *
+	 * opens the tree stored at path, or creates an empty one if there is no
+	 * such file. a tree that was not committed before its process died is
+	 * opened as of its last commit.
+	 */
+
+	public static MappedTree open(Path path) throws IOException {
+		return new MappedTree(path);
+	}
+
+	private void create() throws IOException {
+		/**
+		 * a new file starts as an empty, committed tree; the magic goes in
+		 * last, so a file whose creation was cut short is created again
+		 **/
+
+		header.putInt(H_VERSION, VERSION);
+		header.putInt(H_ORDER, LITTLE_ENDIAN);
+		addChunk();
+		initVirtualLeaf();
+		valuesEnd = 0;
+		values.truncate(0);
+		commit();
+		header.putInt(H_MAGIC, MAGIC);
+		header.force();
+	}
+
+	private void load() throws IOException {
+		/**
+		 * 1. check that this is a tree file this code can read 2. if a commit
+		 * was flipped but not copied yet-->finish it 3. read the bookkeeping
+		 * and map the chunks 4. drop values appended after the commit
+		 **/
+
+		if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION) { // 1
+			throw new IOException("not a WAVL tree file, or one of another version");
+		}
+		if (header.getInt(H_ORDER) != LITTLE_ENDIAN) {
+			throw new IOException("unknown byte order in tree file");
+		}
+		if (header.getInt(H_STATE) == REDO) { // 2
+			replay();
+		}
+		root = header.getInt(H_ROOT); // 3
+		min = header.getInt(H_MIN);
+		max = header.getInt(H_MAX);
+		treeSize = header.getInt(H_SIZE);
+		used = header.getInt(H_USED);
+		free = header.getInt(H_FREE);
+		valuesEnd = header.getLong(H_VALUES_END);
+		int chunkCount = header.getInt(H_CHUNKS);
+		for (int i = 0; i < chunkCount; i++) {
+			addChunk();
+		}
+		if (values.size() > valuesEnd) { // 4
+			values.truncate(valuesEnd);
+		}
+	}
+
+	/**
+	 * public void commit()
+	 *
+	 * makes every insert and delete so far durable. only the pages of records
+	 * changed since the last commit are written, twice: to the redo log and
+	 * then in place.
+	 */
+
+	public void commit() throws IOException {
+		/**
+		 * 1. force the values 2. write the bookkeeping and the dirty pages to
+		 * the redo log, and force it 3. flip the header to REDO: the commit is
+		 * durable 4. copy the log into the records file and mark the header
+		 * clean 5. remap the chunks that changed, dropping their private
+		 * copies of the pages
+		 **/
+
+		if (dirtyPages.isEmpty()) {
+			return;
+		}
+		values.force(false); // 1
+		ByteBuffer bookkeeping = ByteBuffer.allocate(BOOKKEEPING).order(ByteOrder.LITTLE_ENDIAN); // 2
+		bookkeeping.putInt(H_ROOT, root);
+		bookkeeping.putInt(H_MIN, min);
+		bookkeeping.putInt(H_MAX, max);
+		bookkeeping.putInt(H_SIZE, treeSize);
+		bookkeeping.putInt(H_USED, used);
+		bookkeeping.putInt(H_FREE, free);
+		bookkeeping.putInt(H_CHUNKS, chunks.length);
+		bookkeeping.putLong(H_VALUES_END, valuesEnd);
+		bookkeeping.putInt(H_PAGES, dirtyPages.cardinality());
+		redo.truncate(0);
+		writeFully(redo, bookkeeping, 0);
+		long pos = BOOKKEEPING;
+		ByteBuffer page = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int p = dirtyPages.nextSetBit(0); p >= 0; p = dirtyPages.nextSetBit(p + 1)) {
+			writeFully(redo, page.putInt(0, p).clear(), pos);
+			writeFully(redo, pageOf(p), pos + 4);
+			pos += 4 + PAGE;
+		}
+		redo.force(false);
+		header.putInt(H_STATE, REDO); // 3
+		header.force();
+		replay(); // 4
+		int lastChunk = -1; // 5
+		for (int p = dirtyPages.nextSetBit(0); p >= 0; p = dirtyPages.nextSetBit(p + 1)) {
+			int chunk = p / PAGES_PER_CHUNK;
+			if (chunk != lastChunk) {
+				chunks[chunk] = newChunk(chunk);
+				lastChunk = chunk;
+			}
+		}
+		dirtyPages.clear();
+	}
+
+	private void replay() throws IOException {
+		/**
+		 * copies the pages of a flipped commit from the redo log into the
+		 * records file and its bookkeeping into the header, then marks the
+		 * header clean. running it again after a crash does the same.
+		 **/
+
+		ByteBuffer bookkeeping = ByteBuffer.allocate(BOOKKEEPING).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(redo, bookkeeping, 0);
+		int pages = bookkeeping.getInt(H_PAGES);
+		ByteBuffer index = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer page = ByteBuffer.allocate(PAGE);
+		long pos = BOOKKEEPING;
+		for (int i = 0; i < pages; i++) {
+			readFully(redo, index.clear(), pos);
+			readFully(redo, page.clear(), pos + 4);
+			writeFully(records, page.flip(), HEADER + (long) index.getInt(0) * PAGE);
+			pos += 4 + PAGE;
+		}
+		records.force(false);
+		for (int field = H_ROOT; field < H_PAGES; field += 4) {
+			header.putInt(field, bookkeeping.getInt(field));
+		}
+		header.force();
+		header.putInt(H_STATE, CLEAN);
+		header.force();
+	}
+
+	private ByteBuffer pageOf(int p) {
+		/** returns the contents of page p, as this process sees them **/
+
+		int offset = (p % PAGES_PER_CHUNK) * PAGE;
+		return chunks[p / PAGES_PER_CHUNK].slice(offset, PAGE);
+	}
+
+	/**
+	 * public void close()
+	 *
+	 * commits the tree and closes its files
+	 */
+
+	public void close() throws IOException {
+		try {
+			commit();
+		} finally {
+			records.close();
+			values.close();
+			redo.close();
+		}
+	}
+
+	@Override
+	ByteBuffer newChunk(int index) {
+		/**
+		 * maps the index'th chunk of records copy on write, growing the file
+		 * if needed
+		 **/
+
+		try {
+			return records.map(FileChannel.MapMode.PRIVATE, HEADER + index * CHUNK_BYTES, CHUNK_BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	void beforeWrite(int node) {
+		/** marks node's page for the next commit **/
+
+		dirtyPages.set(node >>> PAGE_SHIFT);
+	}
+
+	@Override
+	String info(int node) {
+		/** reads the info at node's value reference (an offset in the values file) **/
+
+		long pos = valueRef(node);
+		try {
+			lengthBuffer.clear();
+			readFully(values, lengthBuffer, pos);
+			int length = lengthBuffer.getInt(0);
+			if (length < 0) {
+				return null;
+			}
+			ByteBuffer bytes = ByteBuffer.allocate(length);
+			readFully(values, bytes, pos + 4);
+			return new String(bytes.array(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	void setInfo(int node, String i) {
+		/** appends i to the values file and points node's value reference at it **/
+
+		byte[] bytes = i == null ? new byte[0] : i.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buf = ByteBuffer.allocate(4 + bytes.length);
+		buf.putInt(i == null ? -1 : bytes.length).put(bytes).flip();
+		try {
+			writeFully(values, buf, valuesEnd);
+			setValueRef(node, valuesEnd);
+			valuesEnd += 4 + bytes.length;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	void clearInfo(int node) {
+		/** the values file is append only, nothing to clear **/
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, pos);
+			if (n < 0) {
+				throw new IOException("tree file is truncated");
+			}
+			pos += n;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			pos += channel.write(buf, pos);
+		}
+	}
+
+	private static Path sibling(Path path, String suffix) {
+		return path.resolveSibling(path.getFileName() + suffix);
+	}
+}
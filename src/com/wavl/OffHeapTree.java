@@ -0,0 +1,396 @@
+package com.wavl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * OffHeapTree
+ *
+ * A WAVL Tree with distinct integer keys and info and the same public API as
+ * Tree, whose node records live outside the Java heap, in direct ByteBuffers.
+ * The records are laid out like ArrayTree's nodes, as fixed size slots
+ * addressed by index, and rebalanced by the same AbstractIndexTree code
+ * through the record accessors at the end of this file. Only the info
+ * strings themselves stay on the heap, referenced from the records.
+ *
+ * The arena is split into chunks of CHUNK_RECORDS records, so a tree can grow
+ * past the 2GB limit of a single buffer without ever copying its records;
+ * the info strings are kept in pages of the same size, for the same reason.
+ * Direct buffers are released when the tree is garbage collected.
+ *
+ * Subclasses in this package (MappedTree) can supply their own chunks and
+ * info storage through newChunk, info, setInfo and clearInfo, and see every
+ * record write through beforeWrite.
+ *
+ */
+public class OffHeapTree extends AbstractIndexTree {
+
+	/** the layout of a node record **/
+	private static final int KEY = 0;
+	private static final int LEFT = 4;
+	private static final int RIGHT = 8;
+	private static final int PARENT = 12;
+	private static final int RANK = 16;
+	private static final int SIZE = 20;
+	private static final int VALUE = 24; // a long, see setInfo
+	static final int RECORD = 32;
+
+	static final int CHUNK_SHIFT = 16;
+	static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+	ByteBuffer[] chunks = new ByteBuffer[0];
+	/** the info strings, in pages of CHUNK_RECORDS like the records **/
+	private String[][] values = new String[0][];
+
+	public OffHeapTree() {
+		/** building an empty tree allocates the first chunk for the virtual leaf **/
+
+		addChunk();
+		initVirtualLeaf();
+	}
+
+	OffHeapTree(boolean unused) {
+		/** for subclasses that set up their own chunks **/
+	}
+
+	/**
+	 * public String search(int k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+
+	public String search(int k) {
+		int node = find(k);
+		if (node == NIL) {
+			return null;
+		}
+		return info(node);
+	}
+
+	private int find(int k) {
+		/** returns the node with key k, or NIL if there is none **/
+
+		int node = root;
+		while (node != NIL) {
+			int nodeKey = key(node);
+			if (nodeKey == k) {
+				return node;
+			}
+			node = k > nodeKey ? right(node) : left(node);
+		}
+		return NIL;
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree. the tree must
+	 * remain valid (keep its invariants). returns the number of rebalancing
+	 * operations, or 0 if no rebalancing operations were necessary. returns -1
+	 * if an item with key k already exists in the tree.
+	 */
+
+	public int insert(int k, String i) {
+		/**
+		 * 1. search for the parent of the new node, or return -1 if k exists
+		 * 2. connect a new leaf to it 3. update min and max if needed 4.
+		 * increase the sizes on the path to the root 5. rebalance
+		 **/
+
+		int p = NIL;
+		int node = root;
+		while (node != NIL) { // 1
+			int nodeKey = key(node);
+			if (nodeKey == k) {
+				return -1;
+			}
+			p = node;
+			node = k > nodeKey ? right(node) : left(node);
+		}
+		int x = allocate(k, i); // 2
+		return link(x, p, p != NIL && k > key(p)); // 3 + 4 + 5
+	}
+
+	/**
+	 * public int delete(int k)
+	 *
+	 * deletes an item with key k from the binary tree, if it is there; the tree
+	 * must remain valid (keep its invariants). returns the number of
+	 * rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+
+	public int delete(int k) {
+		/**
+		 * 1. search for the node, or return -1 if k doesn't exist 2. if it is
+		 * a binary node-->swap its item with its predecessor's and delete the
+		 * predecessor instead 3. connect the only son (or the virtual leaf) to
+		 * the parent 4. decrease the sizes on the path to the root 5. update
+		 * min and max if needed 6. rebalance from the parent
+		 **/
+
+		int node = find(k); // 1
+		if (node == NIL) {
+			return -1;
+		}
+		return remove(node); // 2 - 6
+	}
+
+	/**
+	 * public String min()
+	 *
+	 * Returns the info of the item with the smallest key in the tree, or null
+	 * if the tree is empty
+	 */
+
+	public String min() {
+		if (empty()) {
+			return null;
+		}
+		return info(min);
+	}
+
+	/**
+	 * public String max()
+	 *
+	 * Returns the info of the item with the largest key in the tree, or null if
+	 * the tree is empty
+	 */
+
+	public String max() {
+		if (empty()) {
+			return null;
+		}
+		return info(max);
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree, or an empty
+	 * array if the tree is empty.
+	 */
+
+	public int[] keysToArray() {
+		int[] arr = new int[treeSize];
+		int node = min;
+		for (int i = 0; i < treeSize; i++) {
+			arr[i] = key(node);
+			node = successor(node);
+		}
+		return arr;
+	}
+
+	/**
+	 * public String[] infoToArray() Returns an array which contains all info in
+	 * the tree, sorted by their respective keys, or an empty array if the tree
+	 * is empty.
+	 */
+
+	public String[] infoToArray() {
+		String[] arr = new String[treeSize];
+		int node = min;
+		for (int i = 0; i < treeSize; i++) {
+			arr[i] = info(node);
+			node = successor(node);
+		}
+		return arr;
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * Returns the value of the i'th smallest key, counting from 0 like
+	 * Tree.select (returns "-1" if there is no such key)
+	 */
+
+	public String select(int i) {
+		if (i < 0 || i >= treeSize) {
+			return "-1";
+		}
+		return info(selectNode(i));
+	}
+
+	private int allocate(int k, String i) {
+		/**
+		 * returns a new leaf. a node reused from the free list keeps the value
+		 * reference it still holds, a fresh one gets its own index
+		 **/
+
+		boolean fresh = free == NIL;
+		int x = allocate();
+		if (fresh) {
+			setValueRef(x, x);
+		}
+		setKey(x, k);
+		setInfo(x, i);
+		return x;
+	}
+
+	void addChunk() {
+		/** adds another chunk of records **/
+
+		if (chunks.length == (Integer.MAX_VALUE >> CHUNK_SHIFT)) {
+			throw new IllegalStateException("tree is full");
+		}
+		chunks = Arrays.copyOf(chunks, chunks.length + 1);
+		chunks[chunks.length - 1] = newChunk(chunks.length - 1);
+	}
+
+	void initVirtualLeaf() {
+		setRank(NIL, -1);
+		setSize(NIL, 0);
+	}
+
+	@Override
+	final int capacity() {
+		return chunks.length << CHUNK_SHIFT;
+	}
+
+	@Override
+	final void grow() {
+		addChunk();
+	}
+
+	@Override
+	final void moveItem(int from, int to) {
+		/**
+		 * swaps the value references, so the reference from's item had stays
+		 * in use at to, and the deleted item's goes back to the free list
+		 * with from
+		 **/
+
+		long toValue = valueRef(to);
+		setKey(to, key(from));
+		setValueRef(to, valueRef(from));
+		setValueRef(from, toValue);
+	}
+
+	@Override
+	final void clearItem(int node) {
+		clearInfo(node);
+	}
+
+	ByteBuffer newChunk(int index) {
+		/** returns the buffer for the index'th chunk of records **/
+
+		return ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD).order(ByteOrder.nativeOrder());
+	}
+
+	void beforeWrite(int node) {
+		/** called before any field of node's record changes **/
+	}
+
+	String info(int node) {
+		/** returns the info node's value reference points to **/
+
+		int ref = (int) valueRef(node);
+		return values[ref >>> CHUNK_SHIFT][ref & CHUNK_MASK];
+	}
+
+	void setInfo(int node, String i) {
+		/**
+		 * stores the info of a new node. a reused node keeps its old value
+		 * reference, a fresh one gets its own index as the reference, and the
+		 * first node of a chunk adds the page for it
+		 **/
+
+		int ref = (int) valueRef(node);
+		int page = ref >>> CHUNK_SHIFT;
+		if (page >= values.length) {
+			values = Arrays.copyOf(values, chunks.length);
+		}
+		if (values[page] == null) {
+			values[page] = new String[CHUNK_RECORDS];
+		}
+		values[page][ref & CHUNK_MASK] = i;
+	}
+
+	void clearInfo(int node) {
+		/** drops the info of a deleted node **/
+
+		int ref = (int) valueRef(node);
+		values[ref >>> CHUNK_SHIFT][ref & CHUNK_MASK] = null;
+	}
+
+	/** record accessors **/
+
+	private int get(int node, int field) {
+		return chunks[node >>> CHUNK_SHIFT].getInt((node & CHUNK_MASK) * RECORD + field);
+	}
+
+	private void set(int node, int field, int value) {
+		beforeWrite(node);
+		chunks[node >>> CHUNK_SHIFT].putInt((node & CHUNK_MASK) * RECORD + field, value);
+	}
+
+	private int key(int node) {
+		return get(node, KEY);
+	}
+
+	private void setKey(int node, int k) {
+		set(node, KEY, k);
+	}
+
+	@Override
+	final int left(int node) {
+		return get(node, LEFT);
+	}
+
+	@Override
+	final void setLeft(int node, int son) {
+		set(node, LEFT, son);
+	}
+
+	@Override
+	final int right(int node) {
+		return get(node, RIGHT);
+	}
+
+	@Override
+	final void setRight(int node, int son) {
+		set(node, RIGHT, son);
+	}
+
+	@Override
+	final int parent(int node) {
+		return get(node, PARENT);
+	}
+
+	@Override
+	final void setParent(int node, int p) {
+		set(node, PARENT, p);
+	}
+
+	@Override
+	final int rank(int node) {
+		return get(node, RANK);
+	}
+
+	@Override
+	final void setRank(int node, int r) {
+		set(node, RANK, r);
+	}
+
+	@Override
+	final int size(int node) {
+		return get(node, SIZE);
+	}
+
+	@Override
+	final void setSize(int node, int s) {
+		set(node, SIZE, s);
+	}
+
+	long valueRef(int node) {
+		return chunks[node >>> CHUNK_SHIFT].getLong((node & CHUNK_MASK) * RECORD + VALUE);
+	}
+
+	void setValueRef(int node, long ref) {
+		beforeWrite(node);
+		chunks[node >>> CHUNK_SHIFT].putLong((node & CHUNK_MASK) * RECORD + VALUE, ref);
+	}
+}
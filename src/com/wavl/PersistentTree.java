@@ -0,0 +1,420 @@
+package com.wavl;
+
+/**
+ * PersistentTree
+ *
+ * An immutable WAVL Tree with distinct integer keys and String info. insert
+ * and delete don't change the tree: they return a new version that copies
+ * the nodes on the path to the change (and the few a rotation touches) and
+ * shares every other sub tree with the old version. Nodes have no parent
+ * pointers, so every walk goes down from the root, and rebalancing happens on
+ * the way back up the copied path.
+ *
+ * A version is safe to read from any thread without locks, and it never
+ * changes: keep a reference to it for a point-in-time snapshot. VersionedTree
+ * hands out the current version to readers while writers keep going.
+ *
+ */
+public final class PersistentTree {
+
+	private static final PersistentTree EMPTY = new PersistentTree(null, 0);
+
+	private final Node root;
+	private final int rebalances;
+
+	private PersistentTree(Node root, int rebalances) {
+		this.root = root;
+		this.rebalances = rebalances;
+	}
+
+	/**
+	 * public static PersistentTree emptyTree()
+	 *
+	 * returns the empty tree, the first version of every persistent tree
+	 */
+
+	public static PersistentTree emptyTree() {
+		return EMPTY;
+	}
+
+	/**
+	 * public boolean empty()
+	 *
+	 * returns true if and only if the tree is empty
+	 *
+	 */
+
+	public boolean empty() {
+		return root == null;
+	}
+
+	/**
+	 * public int size()
+	 *
+	 * Returns the number of nodes in the tree.
+	 */
+
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * public int rebalances()
+	 *
+	 * returns the number of rebalancing operations of the insert or delete
+	 * that made this version (0 for the empty tree)
+	 */
+
+	public int rebalances() {
+		return rebalances;
+	}
+
+	/**
+	 * public String search(int k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+
+	public String search(int k) {
+		Node node = root;
+		while (node != null) {
+			if (k == node.key) {
+				return node.value;
+			}
+			node = k < node.key ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * public String min()
+	 *
+	 * Returns the info of the item with the smallest key in the tree, or null
+	 * if the tree is empty
+	 */
+
+	public String min() {
+		if (root == null) {
+			return null;
+		}
+		Node node = root;
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node.value;
+	}
+
+	/**
+	 * public String max()
+	 *
+	 * Returns the info of the item with the largest key in the tree, or null if
+	 * the tree is empty
+	 */
+
+	public String max() {
+		if (root == null) {
+			return null;
+		}
+		Node node = root;
+		while (node.right != null) {
+			node = node.right;
+		}
+		return node.value;
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * Returns the info of the i'th smallest key, counting from 0 like
+	 * Tree.select (returns "-1" if there is no such key)
+	 */
+
+	public String select(int i) {
+		if (i < 0 || i >= size()) {
+			return "-1";
+		}
+		Node node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (i == leftSize) {
+				return node.value;
+			} else if (i < leftSize) {
+				node = node.left;
+			} else {
+				i = i - leftSize - 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree, or an empty
+	 * array if the tree is empty.
+	 */
+
+	public int[] keysToArray() {
+		int[] arr = new int[size()];
+		fillKeys(root, arr, 0);
+		return arr;
+	}
+
+	private static int fillKeys(Node node, int[] arr, int pos) {
+		/** in order, from the top down; returns the next free position **/
+
+		if (node == null) {
+			return pos;
+		}
+		pos = fillKeys(node.left, arr, pos);
+		arr[pos++] = node.key;
+		return fillKeys(node.right, arr, pos);
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 *
+	 * Returns an array which contains all info in the tree, sorted by their
+	 * respective keys, or an empty array if the tree is empty.
+	 */
+
+	public String[] infoToArray() {
+		String[] arr = new String[size()];
+		fillInfo(root, arr, 0);
+		return arr;
+	}
+
+	private static int fillInfo(Node node, String[] arr, int pos) {
+		if (node == null) {
+			return pos;
+		}
+		pos = fillInfo(node.left, arr, pos);
+		arr[pos++] = node.value;
+		return fillInfo(node.right, arr, pos);
+	}
+
+	/**
+	 * public PersistentTree insert(int k, String i)
+	 *
+	 * returns a version of the tree with the item (k, i) added, or this tree
+	 * if an item with key k already exists. this tree doesn't change.
+	 */
+
+	public PersistentTree insert(int k, String i) {
+		int[] counter = new int[1];
+		Node newRoot = insert(root, k, i, counter);
+		if (newRoot == root) {
+			return this;
+		}
+		return new PersistentTree(newRoot, counter[0]);
+	}
+
+	private static Node insert(Node t, int k, String i, int[] counter) {
+		/**
+		 * returns a copy of t's sub tree with k inserted, or t if k is there
+		 * 1. an empty sub tree becomes a new leaf 2. insert in the son k
+		 * belongs under 3. copy t with the new son and rebalance
+		 **/
+
+		if (t == null) { // 1
+			return new Node(k, i, null, null, 0);
+		}
+		if (k == t.key) {
+			return t;
+		}
+		if (k < t.key) { // 2
+			Node left = insert(t.left, k, i, counter);
+			return left == t.left ? t : balanceInsert(t, left, t.right, true, counter); // 3
+		}
+		Node right = insert(t.right, k, i, counter);
+		return right == t.right ? t : balanceInsert(t, t.left, right, false, counter); // 3
+	}
+
+	private static Node balanceInsert(Node t, Node left, Node right, boolean xLeft, int[] counter) {
+		/**
+		 * returns t with the new sons left and right, where x (the new son on
+		 * the xLeft side) may have t's rank 1. if x is below t-->just copy t
+		 * 2. if t is a (0,1) node-->promote t 3. else t is a (0,2) node 3.1 if
+		 * x's inner son is a 2-child-->single rotation, x goes up and t down
+		 * with rank - 1 3.2 else double rotation through the inner son, which
+		 * goes up with rank + 1 while x and t go down
+		 **/
+
+		Node x = xLeft ? left : right;
+		Node sibling = xLeft ? right : left;
+		if (x.rank < t.rank) { // 1
+			return copy(t, left, right, t.rank);
+		}
+		if (t.rank - rank(sibling) == 1) { // 2
+			counter[0]++;
+			return copy(t, left, right, t.rank + 1);
+		}
+		Node outer = xLeft ? x.left : x.right;
+		Node inner = xLeft ? x.right : x.left;
+		if (x.rank - rank(inner) == 2) { // 3.1
+			counter[0]++;
+			if (xLeft) {
+				return copy(x, outer, copy(t, inner, sibling, t.rank - 1), x.rank);
+			}
+			return copy(x, copy(t, sibling, inner, t.rank - 1), outer, x.rank);
+		}
+		counter[0] = counter[0] + 2; // 3.2
+		if (xLeft) {
+			return copy(inner, copy(x, outer, inner.left, x.rank - 1), copy(t, inner.right, sibling, t.rank - 1),
+					inner.rank + 1);
+		}
+		return copy(inner, copy(t, sibling, inner.left, t.rank - 1), copy(x, inner.right, outer, x.rank - 1),
+				inner.rank + 1);
+	}
+
+	/**
+	 * public PersistentTree delete(int k)
+	 *
+	 * returns a version of the tree without the item with key k, or this tree
+	 * if there is no such item. this tree doesn't change.
+	 */
+
+	public PersistentTree delete(int k) {
+		int[] counter = new int[1];
+		Node newRoot = delete(root, k, counter);
+		if (newRoot == root) {
+			return this;
+		}
+		return new PersistentTree(newRoot, counter[0]);
+	}
+
+	private static Node delete(Node t, int k, int[] counter) {
+		/**
+		 * returns a copy of t's sub tree without k, or t if k isn't there 1.
+		 * delete from the son k belongs under, and rebalance the copy of t 2.
+		 * if t has k and at most one son-->the son replaces it 3. else, t's
+		 * predecessor takes its place, and is deleted from the left sub tree
+		 **/
+
+		if (t == null) {
+			return null;
+		}
+		if (k < t.key) { // 1
+			Node left = delete(t.left, k, counter);
+			return left == t.left ? t : balanceDelete(t, left, t.right, true, counter);
+		}
+		if (k > t.key) {
+			Node right = delete(t.right, k, counter);
+			return right == t.right ? t : balanceDelete(t, t.left, right, false, counter);
+		}
+		if (t.left == null) { // 2
+			return t.right;
+		}
+		if (t.right == null) {
+			return t.left;
+		}
+		Node pred = t.left; // 3
+		while (pred.right != null) {
+			pred = pred.right;
+		}
+		Node left = deleteMax(t.left, counter);
+		return balanceDelete(new Node(pred.key, pred.value, left, t.right, t.rank), left, t.right, true, counter);
+	}
+
+	private static Node deleteMax(Node t, int[] counter) {
+		/** returns a copy of t's (non empty) sub tree without its max **/
+
+		if (t.right == null) {
+			return t.left;
+		}
+		Node right = deleteMax(t.right, counter);
+		return balanceDelete(t, t.left, right, false, counter);
+	}
+
+	private static Node balanceDelete(Node t, Node left, Node right, boolean xLeft, int[] counter) {
+		/**
+		 * returns t with the new sons left and right, where x (the new son on
+		 * the xLeft side) lost a node 1. if t is a (2,2) leaf-->demote it 2.
+		 * if x is not a 3-child-->just copy t 3. if x's sibling y is a
+		 * 2-child-->demote t 4. if y is a (2,2) node-->demote t and y 5. else,
+		 * if y's outer son is a 1-child-->single rotation, y goes up with rank
+		 * + 1 and t down with rank - 1 (0 if it became a leaf) 6. else, double
+		 * rotation through y's inner son, which goes up with rank + 2, while y
+		 * goes down by 1 and t by 2
+		 **/
+
+		if (left == null && right == null) { // 1
+			if (t.rank == 1) {
+				counter[0]++;
+				return copy(t, null, null, 0);
+			}
+			return copy(t, null, null, t.rank);
+		}
+		Node x = xLeft ? left : right;
+		Node y = xLeft ? right : left;
+		if (t.rank - rank(x) < 3) { // 2
+			return copy(t, left, right, t.rank);
+		}
+		if (t.rank - rank(y) == 2) { // 3
+			counter[0]++;
+			return copy(t, left, right, t.rank - 1);
+		}
+		Node outer = xLeft ? y.right : y.left;
+		Node inner = xLeft ? y.left : y.right;
+		if (y.rank - rank(outer) == 2 && y.rank - rank(inner) == 2) { // 4
+			counter[0] = counter[0] + 2;
+			Node demoted = copy(y, y.left, y.right, y.rank - 1);
+			return xLeft ? copy(t, x, demoted, t.rank - 1) : copy(t, demoted, x, t.rank - 1);
+		}
+		if (y.rank - rank(outer) == 1) { // 5
+			counter[0]++;
+			int downRank = t.rank - 1;
+			if (x == null && inner == null) {
+				downRank = 0;
+				counter[0]++;
+			}
+			if (xLeft) {
+				return copy(y, copy(t, x, inner, downRank), outer, y.rank + 1);
+			}
+			return copy(y, outer, copy(t, inner, x, downRank), y.rank + 1);
+		}
+		counter[0] = counter[0] + 2; // 6
+		if (xLeft) {
+			return copy(inner, copy(t, x, inner.left, t.rank - 2), copy(y, inner.right, outer, y.rank - 1),
+					inner.rank + 2);
+		}
+		return copy(inner, copy(y, outer, inner.left, y.rank - 1), copy(t, inner.right, x, t.rank - 2),
+				inner.rank + 2);
+	}
+
+	private static Node copy(Node from, Node left, Node right, int rank) {
+		/** a new node with from's item and the given sons and rank **/
+
+		return new Node(from.key, from.value, left, right, rank);
+	}
+
+	private static int rank(Node node) {
+		return node == null ? -1 : node.rank;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/** an immutable node: final fields make it safe to share across threads **/
+
+	private static final class Node {
+
+		final int key;
+		final String value;
+		final Node left;
+		final Node right;
+		final int rank;
+		final int size;
+
+		Node(int key, String value, Node left, Node right, int rank) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.rank = rank;
+			this.size = size(left) + size(right) + 1;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.wavl;
+
+import java.util.Arrays;
+
+/**
+ * SearchCache
+ *
+ * A direct-mapped cache of key to info in front of Tree.search: each key has
+ * one slot (a Fibonacci hash of the key), a search that finds its key there
+ * returns without walking the tree, and one that doesn't walks the tree and
+ * puts what it found in the slot. A slot's key gets a second chance (as in
+ * CLOCK) if it was hit since the last miss on the slot. Only keys that are
+ * in the tree with a non null info are kept, so an empty slot is one with a
+ * null info and a cached key is dropped only when it is deleted.
+ *
+ * Keys, infos and marks sit in plain arrays, so a hit reads one int and one
+ * reference and boxes nothing.
+ *
+ */
+final class SearchCache {
+
+	/** the largest number of slots a cache can have **/
+	static final int MAX_CAPACITY = 1 << 30;
+
+	private final int[] keys;
+	private final String[] values;
+	/** set by a hit on the slot, cleared by the first miss after it **/
+	private final boolean[] referenced;
+	/** 32 - log2(slots), so the hash's top bits pick the slot **/
+	private final int shift;
+	private long hits;
+	private long misses;
+
+	SearchCache(int capacity) {
+		/**
+		 * rounds capacity up to a power of two, at least 2 (a shift of 32
+		 * would shift by nothing)
+		 **/
+
+		int slots = capacity >= MAX_CAPACITY ? MAX_CAPACITY
+				: Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		keys = new int[slots];
+		values = new String[slots];
+		referenced = new boolean[slots];
+		shift = 32 - Integer.numberOfTrailingZeros(slots);
+	}
+
+	int slot(int k) {
+		return (k * 0x9E3779B9) >>> shift;
+	}
+
+	/** returns the info cached for k in slot, or null on a miss **/
+
+	String get(int slot, int k) {
+		String info = values[slot];
+		if (info != null && keys[slot] == k) {
+			referenced[slot] = true;
+			hits++;
+			return info;
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * caches k in slot, unless the key there was hit since the last miss on
+	 * the slot: then it only loses that mark, so a cold key has to miss twice
+	 * to push out a hot one
+	 **/
+
+	void put(int slot, int k, String info) {
+		if (referenced[slot]) {
+			referenced[slot] = false;
+			return;
+		}
+		keys[slot] = k;
+		values[slot] = info;
+	}
+
+	/** drops k, which is being deleted from the tree, if it is cached **/
+
+	void remove(int k) {
+		int slot = slot(k);
+		if (keys[slot] == k) {
+			values[slot] = null;
+			referenced[slot] = false;
+		}
+	}
+
+	/** drops every key, for a tree whose nodes were all replaced **/
+
+	void clear() {
+		Arrays.fill(values, null);
+		Arrays.fill(referenced, false);
+	}
+
+	int capacity() {
+		return keys.length;
+	}
+
+	long hits() {
+		return hits;
+	}
+
+	long misses() {
+		return misses;
+	}
+}
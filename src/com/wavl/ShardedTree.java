@@ -0,0 +1,496 @@
+package com.wavl;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+import com.wavl.Tree.IWAVLNode;
+
+/**
+ * ShardedTree
+ *
+ * A set of Trees that split the key space into ranges, one Tree (a shard) per
+ * range, each behind a StampedLock of its own. insert and delete lock only
+ * the shard their key falls in, so writers to different shards don't wait for
+ * each other, and search reads its shard optimistically first. select, min,
+ * max, keysToArray and infoToArray combine the shards in key order, under the
+ * read locks of all of them.
+ *
+ * When an insert leaves its shard more than twice the average size (plus
+ * SLACK), the boundary between it and its smaller neighbour moves: the shard
+ * is split and half the difference is joined onto the neighbour, both in
+ * O(log n), and so on from the neighbour while it is oversized. An
+ * operation routes by the boundaries it read before locking, and retries if
+ * they changed by the time it holds the lock.
+ *
+ */
+public class ShardedTree {
+
+	/** how much a shard may grow past twice the average before it is resized **/
+	static final int SLACK = 1 << 10;
+
+	private final Shard[] shards;
+	private final ReentrantLock resizeLock = new ReentrantLock();
+
+	/** lowerBounds[i] is the smallest key shard i may hold; replaced, never changed **/
+	private volatile int[] lowerBounds;
+
+	/**
+	 * public ShardedTree(int shards)
+	 *
+	 * a tree of the given number of shards, splitting the non negative keys
+	 * into equal ranges to start with
+	 */
+
+	public ShardedTree(int shards) {
+		this(evenBounds(shards));
+	}
+
+	/**
+	 * public ShardedTree(int[] lowerBounds)
+	 *
+	 * a tree with one shard per bound, shard i starting at lowerBounds[i]
+	 * (shard 0 takes every key below lowerBounds[1]). The bounds must be
+	 * increasing.
+	 */
+
+	public ShardedTree(int[] lowerBounds) {
+		if (lowerBounds.length == 0) {
+			throw new IllegalArgumentException("a sharded tree needs at least one shard");
+		}
+		for (int i = 1; i < lowerBounds.length; i++) {
+			if (lowerBounds[i] <= lowerBounds[i - 1]) {
+				throw new IllegalArgumentException("shard bounds must be increasing");
+			}
+		}
+		int[] bounds = lowerBounds.clone();
+		bounds[0] = Integer.MIN_VALUE;
+		shards = new Shard[bounds.length];
+		for (int i = 0; i < shards.length; i++) {
+			shards[i] = new Shard();
+		}
+		this.lowerBounds = bounds;
+	}
+
+	private static int[] evenBounds(int shards) {
+		if (shards < 1) {
+			throw new IllegalArgumentException("a sharded tree needs at least one shard");
+		}
+		int[] bounds = new int[shards];
+		for (int i = 0; i < shards; i++) {
+			bounds[i] = (int) ((long) i * (Integer.MAX_VALUE + 1L) / shards);
+		}
+		return bounds;
+	}
+
+	private static int shardOf(int[] bounds, int k) {
+		/** the last shard whose lower bound is at most k **/
+
+		int lo = 0;
+		int hi = bounds.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (bounds[mid] <= k) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * public int shards()
+	 *
+	 * returns the number of shards
+	 */
+
+	public int shards() {
+		return shards.length;
+	}
+
+	/**
+	 * public String search(int k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+
+	public String search(int k) {
+		/**
+		 * an optimistic read first, walking the shard's tree like
+		 * ConcurrentTreeView does, then the read lock
+		 **/
+
+		while (true) {
+			int[] bounds = lowerBounds;
+			Shard shard = shards[shardOf(bounds, k)];
+			for (int attempt = 0; attempt < ConcurrentTreeView.OPTIMISTIC_ATTEMPTS; attempt++) {
+				long stamp = shard.lock.tryOptimisticRead();
+				if (stamp == 0) {
+					continue;
+				}
+				String result = ConcurrentTreeView.walkSearch(shard.tree, k);
+				if (result != ConcurrentTreeView.TORN && shard.lock.validate(stamp) && bounds == lowerBounds) {
+					return result;
+				}
+			}
+			long stamp = shard.lock.readLock();
+			try {
+				if (bounds == lowerBounds) {
+					return ConcurrentTreeView.walkSearch(shard.tree, k);
+				}
+			} finally {
+				shard.lock.unlockRead(stamp);
+			}
+		}
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 *
+	 * inserts an item with key k and info i to the shard k falls in. returns
+	 * the number of rebalancing operations of that shard's Tree, or -1 if an
+	 * item with key k already exists in the tree. May move the shard's
+	 * boundary afterwards.
+	 */
+
+	public int insert(int k, String i) {
+		while (true) {
+			int[] bounds = lowerBounds;
+			int index = shardOf(bounds, k);
+			Shard shard = shards[index];
+			int result;
+			long stamp = shard.lock.writeLock();
+			try {
+				if (bounds != lowerBounds) {
+					continue;
+				}
+				result = shard.tree.insert(k, i);
+				shard.size = shard.tree.size();
+			} finally {
+				shard.lock.unlockWrite(stamp);
+			}
+			if (result >= 0) {
+				resize(index);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * public int delete(int k)
+	 *
+	 * deletes an item with key k from the shard k falls in, if it exists.
+	 * returns the number of rebalancing operations of that shard's Tree, or -1
+	 * if an item with key k was not found in the tree.
+	 */
+
+	public int delete(int k) {
+		while (true) {
+			int[] bounds = lowerBounds;
+			Shard shard = shards[shardOf(bounds, k)];
+			long stamp = shard.lock.writeLock();
+			try {
+				if (bounds == lowerBounds) {
+					int result = shard.tree.delete(k);
+					shard.size = shard.tree.size();
+					return result;
+				}
+			} finally {
+				shard.lock.unlockWrite(stamp);
+			}
+		}
+	}
+
+	/**
+	 * public int size()
+	 *
+	 * Returns the number of nodes in the tree: the sum of the shard sizes,
+	 * read without locks, so it is exact once writers are done.
+	 */
+
+	public int size() {
+		int size = 0;
+		for (Shard shard : shards) {
+			size += shard.size;
+		}
+		return size;
+	}
+
+	/**
+	 * public boolean empty()
+	 *
+	 * returns true if and only if the tree is empty
+	 */
+
+	public boolean empty() {
+		return size() == 0;
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * Returns the info of the i'th smallest key, counting from 0 like
+	 * Tree.select (returns "-1" if there is no such key): skips whole shards
+	 * by their sizes, then selects inside one.
+	 */
+
+	public String select(int i) {
+		long[] stamps = readLockAll();
+		try {
+			if (i < 0) {
+				return "-1";
+			}
+			for (Shard shard : shards) {
+				int size = shard.tree.size();
+				if (i < size) {
+					return shard.tree.select(i);
+				}
+				i = i - size;
+			}
+			return "-1";
+		} finally {
+			unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public String min()
+	 *
+	 * Returns the info of the item with the smallest key in the tree, or null
+	 * if the tree is empty
+	 */
+
+	public String min() {
+		long[] stamps = readLockAll();
+		try {
+			for (Shard shard : shards) {
+				if (!shard.tree.empty()) {
+					return shard.tree.min();
+				}
+			}
+			return null;
+		} finally {
+			unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public String max()
+	 *
+	 * Returns the info of the item with the largest key in the tree, or null if
+	 * the tree is empty
+	 */
+
+	public String max() {
+		long[] stamps = readLockAll();
+		try {
+			for (int i = shards.length - 1; i >= 0; i--) {
+				if (!shards[i].tree.empty()) {
+					return shards[i].tree.max();
+				}
+			}
+			return null;
+		} finally {
+			unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree, or an empty
+	 * array if the tree is empty: the shards' keys one after the other.
+	 */
+
+	public int[] keysToArray() {
+		long[] stamps = readLockAll();
+		try {
+			int size = 0;
+			for (Shard shard : shards) {
+				size += shard.tree.size();
+			}
+			int[] arr = new int[size];
+			int pos = 0;
+			for (Shard shard : shards) {
+				int[] keys = shard.tree.keysToArray();
+				System.arraycopy(keys, 0, arr, pos, keys.length);
+				pos += keys.length;
+			}
+			return arr;
+		} finally {
+			unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 *
+	 * Returns an array which contains all info in the tree, sorted by their
+	 * respective keys, or an empty array if the tree is empty.
+	 */
+
+	public String[] infoToArray() {
+		long[] stamps = readLockAll();
+		try {
+			int size = 0;
+			for (Shard shard : shards) {
+				size += shard.tree.size();
+			}
+			String[] arr = new String[size];
+			int pos = 0;
+			for (Shard shard : shards) {
+				String[] info = shard.tree.infoToArray();
+				System.arraycopy(info, 0, arr, pos, info.length);
+				pos += info.length;
+			}
+			return arr;
+		} finally {
+			unlockAll(stamps);
+		}
+	}
+
+	private long[] readLockAll() {
+		/**
+		 * read locks every shard in order, which is the order resize locks
+		 * them in too, until no boundary moved in between
+		 **/
+
+		long[] stamps = new long[shards.length];
+		while (true) {
+			int[] bounds = lowerBounds;
+			for (int i = 0; i < shards.length; i++) {
+				stamps[i] = shards[i].lock.readLock();
+			}
+			if (bounds == lowerBounds) {
+				return stamps;
+			}
+			unlockAll(stamps);
+		}
+	}
+
+	private void unlockAll(long[] stamps) {
+		for (int i = shards.length - 1; i >= 0; i--) {
+			shards[i].lock.unlockRead(stamps[i]);
+		}
+	}
+
+	private boolean oversized(int index) {
+		return shards.length > 1 && shards[index].size > 2 * (size() / shards.length) + SLACK;
+	}
+
+	private void resize(int index) {
+		/**
+		 * moves the boundary between an oversized shard and its smaller
+		 * neighbour, one resize at a time 1. pick the smaller neighbour 2.
+		 * write lock the lower shard of the two, then the upper one 3. split
+		 * half the difference off the big shard's side facing the neighbour,
+		 * and join it onto the neighbour 4. publish the new boundary before
+		 * unlocking, so operations routed by the old one retry 5. if the
+		 * neighbour is oversized now, carry on from it, so keys spread past
+		 * the shards next to where they are inserted
+		 **/
+
+		if (!oversized(index) || !resizeLock.tryLock()) {
+			return;
+		}
+		try {
+			while (oversized(index)) {
+				int other; // 1
+				if (index == 0) {
+					other = 1;
+				} else if (index == shards.length - 1) {
+					other = index - 1;
+				} else {
+					other = shards[index - 1].size <= shards[index + 1].size ? index - 1 : index + 1;
+				}
+				if (!moveBoundary(index, other)) {
+					return;
+				}
+				index = other; // 5
+			}
+		} finally {
+			resizeLock.unlock();
+		}
+	}
+
+	private boolean moveBoundary(int index, int other) {
+		/** returns false if other was no smaller, so nothing moved **/
+
+		Shard low = shards[Math.min(index, other)]; // 2
+		Shard high = shards[Math.max(index, other)];
+		long lowStamp = low.lock.writeLock();
+		long highStamp = high.lock.writeLock();
+		try {
+			int moved = (shards[index].tree.size() - shards[other].tree.size()) / 2; // 3
+			if (moved <= 0) {
+				return false;
+			}
+			int bound;
+			if (index < other) {
+				bound = keyAt(low.tree, low.tree.size() - moved);
+				Tree[] parts = low.tree.split(bound);
+				low.tree = parts[0];
+				high.tree = concat(parts[1], high.tree);
+			} else {
+				bound = keyAt(high.tree, moved);
+				Tree[] parts = high.tree.split(bound);
+				low.tree = concat(low.tree, parts[0]);
+				high.tree = parts[1];
+			}
+			low.size = low.tree.size();
+			high.size = high.tree.size();
+			int[] bounds = lowerBounds.clone(); // 4
+			bounds[Math.max(index, other)] = bound;
+			lowerBounds = bounds;
+			return true;
+		} finally {
+			high.lock.unlockWrite(highStamp);
+			low.lock.unlockWrite(lowStamp);
+		}
+	}
+
+	private static int keyAt(Tree tree, int i) {
+		/** the i'th smallest key of a tree with order statistics **/
+
+		IWAVLNode node = tree.getRoot();
+		while (true) {
+			IWAVLNode left = node.getLeft();
+			int leftSize = left.isRealNode() ? left.getSubtreeSize() : 0;
+			if (i == leftSize) {
+				return node.getKey();
+			} else if (i < leftSize) {
+				node = left;
+			} else {
+				i = i - leftSize - 1;
+				node = node.getRight();
+			}
+		}
+	}
+
+	private static Tree concat(Tree left, Tree right) {
+		/**
+		 * joins two trees, every key of left below every key of right, with
+		 * right's smallest item in the middle
+		 **/
+
+		if (right.empty()) {
+			return left;
+		}
+		Tree.Cursor cursor = right.cursor();
+		cursor.next();
+		int key = cursor.key();
+		String value = cursor.value();
+		right.delete(key);
+		return Tree.join(left, key, value, right);
+	}
+
+	/** one key range: its Tree, its lock, and its size for lock free reads **/
+
+	private static final class Shard {
+
+		final StampedLock lock = new StampedLock();
+		Tree tree = new Tree();
+		volatile int size;
+	}
+}
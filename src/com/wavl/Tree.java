@@ -1,6 +1,20 @@
 package com.wavl;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * WAVLTree
@@ -11,41 +25,557 @@ import java.util.TreeMap;
 public class Tree {
 
 	private Node sentinel = new Node(0, "sentinel", true, false);
-	private Node root = new Node();
+	/**
+	 * the one virtual leaf of this tree: every missing son of a real node
+	 * points to it, so its parent field is meaningless
+	 **/
+	private final Node virtualLeaf = new Node();
+	private Node root = virtualLeaf;
 	private int treeSize = 0;
 	private int rebalanceCounter = 0;
-	private Node min = new Node();
-	private Node max = new Node();
+	/** counts the changes to the tree, so cursors can fail fast **/
+	private int modCount = 0;
+	/** counters for rebalancing and search paths, null (off) by default **/
+	private TreeMetrics metrics;
+	/**
+	 * true if search, insert and delete should start from the node the last
+	 * of them touched (finger) instead of the root
+	 **/
+	private boolean fingerSearch;
+	private Node finger;
+	/** the key to info cache in front of search, null (off) by default **/
+	private SearchCache cache;
+	private Node min = virtualLeaf;
+	private Node max = virtualLeaf;
+	/**
+	 * true if the search, size and rebalance paths should use the original
+	 * recursive methods instead of the loops (kept for comparison)
+	 **/
+	private final boolean recursive;
+	/**
+	 * false if the tree should not keep subtree sizes: insert then stops
+	 * walking up as soon as it is rebalanced, and select is not supported
+	 **/
+	private final boolean orderStatistics;
 
 	public Tree() {
+		this(false, true);
+	}
+
+	public Tree(boolean recursive) {
+		this(recursive, true);
+	}
+
+	public Tree(boolean recursive, boolean orderStatistics) {
 		/**
-		 * building an empty tree connects the sentinel to a virtual node
+		 * building an empty tree connects the sentinel to the virtual leaf
 		 **/
 
-		Node virtualRoot = new Node();
-		sentinel.right = virtualRoot;
-		virtualRoot.parent = sentinel;
-		root = virtualRoot;
+		this.recursive = recursive;
+		this.orderStatistics = orderStatistics;
+		sentinel.right = virtualLeaf;
+		root = virtualLeaf;
 		treeSize = 0;
 	}
 
 	public Tree(Node r) {
 		/** building a new tree with a specific root **/
 
+		this.recursive = false;
+		this.orderStatistics = true;
 		this.root = r;
 		root.parent = sentinel;
 		sentinel.right = r;
-		root.right = new Node();
-		root.right.parent = r;
-		root.left = new Node();
-		root.left.parent = r;
-		if (r.getKey() == -1) {
+		root.right = virtualLeaf;
+		root.left = virtualLeaf;
+		if (!r.isRealNode()) {
 			treeSize = 0;
 		} else {
 			treeSize = 1;
 		}
 	}
 
+	/**
+	 * public static Tree fromSorted(int[] keys, String[] values)
+	 *
+	 * builds a tree of the items (keys[i], values[i]) in O(n), without
+	 * rebalancing. keys must be strictly increasing, and values as long as
+	 * keys.
+	 */
+
+	public static Tree fromSorted(int[] keys, String[] values) {
+		if (keys.length != values.length) {
+			throw new IllegalArgumentException("keys and values differ in length");
+		}
+		return fromSorted(keys.length, Arrays.stream(keys).iterator(), Arrays.asList(values).iterator());
+	}
+
+	/**
+	 * public static Tree fromSorted(int n, PrimitiveIterator.OfInt keys,
+	 * Iterator<String> values)
+	 *
+	 * the streaming version of fromSorted: builds a tree of the next n keys
+	 * and values, reading each one once, in O(n) and without buffering them.
+	 * the keys must be strictly increasing.
+	 */
+
+	public static Tree fromSorted(int n, PrimitiveIterator.OfInt keys, Iterator<String> values) {
+		/**
+		 * 1. build the sub trees recursively, each balanced so the ranks of
+		 * sibling sub trees differ by at most 1 2. connect the root to the
+		 * sentinel 3. find min and max
+		 **/
+
+		if (n < 0) {
+			throw new IllegalArgumentException("negative size: " + n);
+		}
+		Tree tree = new Tree();
+		if (n == 0) {
+			return tree;
+		}
+		Node root = tree.buildSorted(n, keys, values, new long[] { Long.MIN_VALUE }); // 1
+		tree.root = root; // 2
+		root.parent = tree.sentinel;
+		tree.sentinel.right = root;
+		tree.treeSize = n;
+		tree.min = tree.localMin(root); // 3
+		tree.max = tree.localMax(root);
+		return tree;
+	}
+
+	private Node buildSorted(int n, PrimitiveIterator.OfInt keys, Iterator<String> values, long[] lastKey) {
+		/**
+		 * returns the root of a balanced tree of the next n items, with ranks
+		 * equal to heights 1. build the left sub tree from the first half 2.
+		 * the next item is the root 3. build the right sub tree from the rest
+		 **/
+
+		if (n == 0) {
+			return virtualLeaf;
+		}
+		int leftSize = (n - 1) / 2;
+		Node left = buildSorted(leftSize, keys, values, lastKey); // 1
+		if (!keys.hasNext() || !values.hasNext()) { // 2
+			throw new IllegalArgumentException("fewer items than the given size");
+		}
+		int k = keys.nextInt();
+		if (k <= lastKey[0]) {
+			throw new IllegalArgumentException("keys are not strictly increasing at " + k);
+		}
+		lastKey[0] = k;
+		Node node = new Node(k, values.next());
+		node.isVirtualLeaf = false;
+		Node right = buildSorted(n - 1 - leftSize, keys, values, lastKey); // 3
+		node.left = left;
+		node.right = right;
+		if (left.isRealNode()) {
+			left.parent = node;
+		}
+		if (right.isRealNode()) {
+			right.parent = node;
+		}
+		node.rank = Math.max(left.rank, right.rank) + 1;
+		node.size = n;
+		return node;
+	}
+
+	/**
+	 * public static Tree join(Tree left, int key, String value, Tree right)
+	 *
+	 * returns a tree of the items of left, the item (key, value) and the items
+	 * of right, in O(log n): every key of left must be smaller than key, and
+	 * every key of right larger. the nodes of left and right move to the new
+	 * tree, so both are left empty.
+	 */
+
+	public static Tree join(Tree left, int key, String value, Tree right) {
+		/**
+		 * 1. check the order of the keys 2. join the roots under a new node 3.
+		 * connect the root to the sentinel and set size, min and max 4. empty
+		 * left and right
+		 **/
+
+		if ((!left.empty() && left.max.key >= key) || (!right.empty() && right.min.key <= key)) { // 1
+			throw new IllegalArgumentException("key " + key + " does not separate the two trees");
+		}
+		Tree tree = new Tree(left.recursive, left.orderStatistics && right.orderStatistics);
+		Node mid = tree.new Node(key, value);
+		mid.isVirtualLeaf = false;
+		tree.adopt(tree.joinNodes(left.root, mid, right.root), left.treeSize + right.treeSize + 1); // 2 + 3
+		left.clear(); // 4
+		right.clear();
+		return tree;
+	}
+
+	/**
+	 * public Tree[] split(int key)
+	 *
+	 * splits the tree in O(log n) into two trees: the items with keys smaller
+	 * than key, and the items with keys key or larger. the nodes move to the
+	 * two new trees, so this tree is left empty. needs the subtree sizes, so a
+	 * tree without order statistics throws UnsupportedOperationException.
+	 */
+
+	public Tree[] split(int key) {
+		/**
+		 * 1. split the root into the two sides 2. connect each side to a new
+		 * tree 3. empty this tree
+		 **/
+
+		if (!orderStatistics) {
+			throw new UnsupportedOperationException("split needs order statistics");
+		}
+		Node[] sides = new Node[2];
+		Node found = splitNodes(root, key, sides); // 1
+		if (found != null) {
+			sides[1] = joinNodes(virtualLeaf, found, sides[1]);
+		}
+		Tree smaller = new Tree(recursive, orderStatistics); // 2
+		smaller.adopt(sides[0], sides[0].getSubtreeSize());
+		Tree larger = new Tree(recursive, orderStatistics);
+		larger.adopt(sides[1], sides[1].getSubtreeSize());
+		clear(); // 3
+		return new Tree[] { smaller, larger };
+	}
+
+	private Node splitNodes(Node node, int key, Node[] sides) {
+		/**
+		 * splits node's sub tree into sides[0] (keys smaller than key) and
+		 * sides[1] (keys larger than key), and returns the detached node with
+		 * key, or null if there is none 1. a virtual leaf splits into two
+		 * empty sides 2. if node has key-->its sub trees are the sides 3. if
+		 * node goes right-->split its left sub tree, and join the larger side
+		 * with node and its right sub tree 4. else, split its right sub tree,
+		 * and join its left sub tree and node with the smaller side. each join
+		 * costs the rank difference it bridges, and these add up to the height
+		 * of the tree
+		 **/
+
+		if (!node.isRealNode()) { // 1
+			sides[0] = virtualLeaf;
+			sides[1] = virtualLeaf;
+			return null;
+		}
+		Node left = node.left;
+		Node right = node.right;
+		Node found;
+		if (key == node.key) { // 2
+			sides[0] = left;
+			sides[1] = right;
+			found = node;
+		} else if (key < node.key) { // 3
+			found = splitNodes(left, key, sides);
+			sides[1] = joinNodes(sides[1], node, right);
+		} else { // 4
+			found = splitNodes(right, key, sides);
+			sides[0] = joinNodes(left, node, sides[0]);
+		}
+		return found;
+	}
+
+	private Node splitLast(Node node, Node[] rest) {
+		/**
+		 * detaches and returns the max of node's (real) sub tree, and sets
+		 * rest[0] to the root of the rest of it 1. if node has no right
+		 * son-->node is the max, and its left sub tree the rest 2. else, split
+		 * the max off the right sub tree and join node's left sub tree and node
+		 * with what is left of it
+		 **/
+
+		Node left = node.left;
+		if (!node.right.isRealNode()) { // 1
+			rest[0] = left;
+			return node;
+		}
+		Node last = splitLast(node.right, rest); // 2
+		rest[0] = joinNodes(left, node, rest[0]);
+		return last;
+	}
+
+	private Node joinTwo(Node left, Node right) {
+		/**
+		 * joins two trees without a middle node: the max of left becomes the
+		 * middle node
+		 **/
+
+		if (!left.isRealNode()) {
+			return right;
+		}
+		if (!right.isRealNode()) {
+			return left;
+		}
+		Node[] rest = new Node[1];
+		Node last = splitLast(left, rest);
+		return joinNodes(rest[0], last, right);
+	}
+
+	private Node joinNodes(Node left, Node mid, Node right) {
+		/**
+		 * returns the root of a valid tree of left, mid and right, where mid is
+		 * a detached node between them 1. if the ranks are close-->mid is the
+		 * root 2. else, walk down the inner spine of the higher tree to the
+		 * first node c whose rank is at most one above the lower tree 3. mid
+		 * takes c's place with c and the lower tree as sons, one rank above c
+		 * (so it is a (1,1) or (1,2) node) 4. increase the sizes above mid 5.
+		 * mid may be a 0-child of its parent, which is fixed exactly like an
+		 * insert
+		 **/
+
+		int diff = left.rank - right.rank;
+		if (diff <= 1 && diff >= -1) { // 1
+			setSons(mid, left, right);
+			mid.rank = Math.max(left.rank, right.rank) + 1;
+			mid.parent = sentinel;
+			return mid;
+		}
+		boolean leftHigher = diff > 1;
+		Node high = leftHigher ? left : right;
+		Node low = leftHigher ? right : left;
+		high.parent = sentinel; // the rotations may replace the root
+		sentinel.right = high;
+		Node p = sentinel;
+		Node c = high;
+		while (c.rank > low.rank + 1) { // 2
+			p = c;
+			c = leftHigher ? c.right : c.left;
+		}
+		if (leftHigher) { // 3
+			setSons(mid, c, low);
+			p.right = mid;
+		} else {
+			setSons(mid, low, c);
+			p.left = mid;
+		}
+		mid.rank = c.rank + 1;
+		mid.parent = p;
+		int added = low.getSubtreeSize() + 1; // 4
+		for (Node a = p; !a.isSentinel; a = a.parent) {
+			a.size += added;
+		}
+		rebalanceInsert(p); // 5
+		this.rebalanceCounter = 0;
+		return sentinel.right;
+	}
+
+	private void setSons(Node node, Node left, Node right) {
+		/** connects left and right as node's sons and sets node's size **/
+
+		node.left = left;
+		node.right = right;
+		if (left.isRealNode()) {
+			left.parent = node;
+		}
+		if (right.isRealNode()) {
+			right.parent = node;
+		}
+		node.size = left.getSubtreeSize() + right.getSubtreeSize() + 1;
+	}
+
+	private void adopt(Node r, int size) {
+		/** makes r (the root of a valid tree of size nodes) this tree's root **/
+
+		modCount++;
+		finger = null;
+		if (cache != null) {
+			cache.clear();
+		}
+		if (!r.isRealNode()) {
+			clear();
+			return;
+		}
+		root = r;
+		r.parent = sentinel;
+		sentinel.right = r;
+		treeSize = size;
+		min = localMin(r);
+		max = localMax(r);
+	}
+
+	private void clear() {
+		/** empties the tree, without touching the nodes it had **/
+
+		modCount++;
+		finger = null;
+		if (cache != null) {
+			cache.clear();
+		}
+		root = virtualLeaf;
+		sentinel.right = virtualLeaf;
+		min = virtualLeaf;
+		max = virtualLeaf;
+		treeSize = 0;
+	}
+
+	/**
+	 * public static Tree union(Tree a, Tree b)
+	 *
+	 * returns a tree of the items of a and the items of b, taking the info of
+	 * a for keys that are in both. runs on the common ForkJoinPool; see
+	 * union(Tree, Tree, ForkJoinPool).
+	 */
+
+	public static Tree union(Tree a, Tree b) {
+		return union(a, b, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * public static Tree union(Tree a, Tree b, ForkJoinPool pool)
+	 *
+	 * returns a tree of the items of a and the items of b, taking the info of
+	 * a for keys that are in both. the trees are merged by splitting and
+	 * joining their sub trees in parallel on pool, in O(m log(n/m + 1)) work
+	 * for sizes m <= n. the nodes move to the result, so a and b are left
+	 * empty. both trees need order statistics.
+	 */
+
+	public static Tree union(Tree a, Tree b, ForkJoinPool pool) {
+		return setOperation(SetOperation.UNION, a, b, pool);
+	}
+
+	/**
+	 * public static Tree intersection(Tree a, Tree b)
+	 *
+	 * returns a tree of the items of a whose keys are also in b. runs on the
+	 * common ForkJoinPool; see intersection(Tree, Tree, ForkJoinPool).
+	 */
+
+	public static Tree intersection(Tree a, Tree b) {
+		return intersection(a, b, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * public static Tree intersection(Tree a, Tree b, ForkJoinPool pool)
+	 *
+	 * returns a tree of the items of a whose keys are also in b, computed in
+	 * parallel on pool like union. a and b are left empty.
+	 */
+
+	public static Tree intersection(Tree a, Tree b, ForkJoinPool pool) {
+		return setOperation(SetOperation.INTERSECTION, a, b, pool);
+	}
+
+	/**
+	 * public static Tree difference(Tree a, Tree b)
+	 *
+	 * returns a tree of the items of a whose keys are not in b. runs on the
+	 * common ForkJoinPool; see difference(Tree, Tree, ForkJoinPool).
+	 */
+
+	public static Tree difference(Tree a, Tree b) {
+		return difference(a, b, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * public static Tree difference(Tree a, Tree b, ForkJoinPool pool)
+	 *
+	 * returns a tree of the items of a whose keys are not in b, computed in
+	 * parallel on pool like union. a and b are left empty.
+	 */
+
+	public static Tree difference(Tree a, Tree b, ForkJoinPool pool) {
+		return setOperation(SetOperation.DIFFERENCE, a, b, pool);
+	}
+
+	private static Tree setOperation(SetOperation op, Tree a, Tree b, ForkJoinPool pool) {
+		/**
+		 * 1. merge the roots on pool 2. connect the result to a new tree 3.
+		 * empty a and b
+		 **/
+
+		if (!a.orderStatistics || !b.orderStatistics) {
+			throw new UnsupportedOperationException(op + " needs order statistics");
+		}
+		if (a == b && !a.empty()) {
+			throw new IllegalArgumentException(op + " of a tree with itself");
+		}
+		Node root = pool.invoke(new SetTask(op, a.root, b.root)); // 1
+		Tree tree = new Tree(a.recursive, true); // 2
+		tree.adopt(root, root.getSubtreeSize());
+		a.clear(); // 3
+		b.clear();
+		return tree;
+	}
+
+	private Node merge(SetOperation op, Node a, Node b) {
+		/**
+		 * merges the sub trees a and b, using this tree's sentinel for the
+		 * joins 1. if a or b is empty-->the answer is a, b or empty 2. split
+		 * one tree by the root key of the other: a's root for union and
+		 * intersection, b's root for difference 3. merge the two smaller
+		 * sides and the two larger sides, in parallel if they are big enough
+		 * 4. join the results, through the root of a unless it is dropped
+		 **/
+
+		if (!a.isRealNode()) { // 1
+			return op == SetOperation.UNION ? b : a;
+		}
+		if (!b.isRealNode()) {
+			return op == SetOperation.INTERSECTION ? b : a;
+		}
+		int total = a.size + b.size;
+		Node pivot = op == SetOperation.DIFFERENCE ? b : a; // 2
+		Node pivotLeft = pivot.left;
+		Node pivotRight = pivot.right;
+		Node[] sides = new Node[2];
+		Node found = splitNodes(op == SetOperation.DIFFERENCE ? a : b, pivot.key, sides);
+		Node leftA = pivot == a ? pivotLeft : sides[0];
+		Node leftB = pivot == a ? sides[0] : pivotLeft;
+		Node rightA = pivot == a ? pivotRight : sides[1];
+		Node rightB = pivot == a ? sides[1] : pivotRight;
+		Node left;
+		Node right;
+		if (total > SET_CUTOFF) { // 3
+			SetTask task = new SetTask(op, leftA, leftB);
+			task.fork();
+			right = merge(op, rightA, rightB);
+			left = task.join();
+		} else {
+			left = merge(op, leftA, leftB);
+			right = merge(op, rightA, rightB);
+		}
+		if (op == SetOperation.UNION || (op == SetOperation.INTERSECTION && found != null)) { // 4
+			return joinNodes(left, a, right);
+		}
+		return joinTwo(left, right);
+	}
+
+	/** the set operations of union, intersection and difference **/
+
+	private enum SetOperation {
+		UNION, INTERSECTION, DIFFERENCE
+	}
+
+	/**
+	 * the combined size of two sub trees below which merge runs them in the
+	 * current thread instead of forking
+	 **/
+	static final int SET_CUTOFF = 1 << 13;
+
+	/**
+	 * merges two sub trees as a fork-join task. every task joins on a scratch
+	 * tree of its own, since the joins rotate under its sentinel
+	 **/
+
+	private static final class SetTask extends RecursiveTask<Node> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SetOperation op;
+		private final Node a;
+		private final Node b;
+
+		SetTask(SetOperation op, Node a, Node b) {
+			this.op = op;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		protected Node compute() {
+			return new Tree().merge(op, a, b);
+		}
+	}
+
 	/**
 	 * public boolean empty()
 	 *
@@ -73,6 +603,30 @@ public class Tree {
 	 */
 
 	public String search(int k) {
+		/**
+		 * with a cache, 1. a hit returns the cached info (a search path of no
+		 * nodes) 2. a miss searches the tree and caches what it found
+		 **/
+
+		if (cache == null) {
+			return searchItem(k);
+		}
+		int slot = cache.slot(k);
+		String info = cache.get(slot, k); // 1
+		if (info != null) {
+			if (metrics != null) {
+				metrics.searchPath(0);
+			}
+			return info;
+		}
+		info = searchItem(k); // 2
+		if (info != null) {
+			cache.put(slot, k, info);
+		}
+		return info;
+	}
+
+	private String searchItem(int k) {
 		/**
 		 * 1. checks if the tree is empty-->returns null 2. else, checks if the
 		 * key belongs to the root-->returns the info of the root 3. else if the
@@ -82,6 +636,20 @@ public class Tree {
 		 * another function with the root's left sun tree
 		 */
 
+		if (fingerSearch) {
+			if (empty()) {
+				if (metrics != null) {
+					metrics.searchPath(0);
+				}
+				return null;
+			}
+			finger = metrics != null ? countedSearchParent(k) : recSearchParent(k, searchStart(k));
+			return finger.key == k ? finger.info : null;
+		}
+		if (metrics != null) {
+			Node node = countedSearch(k);
+			return node.isRealNode() ? node.info : null;
+		}
 		if (empty()) { // 1
 			return null;
 		}
@@ -96,7 +664,96 @@ public class Tree {
 		return recSearch(k, root.left).getValue(); // 5
 	}
 
+	private int pathLength(int k) {
+		/**
+		 * the number of real nodes a search for k compares k with, for the
+		 * events that are recorded
+		 **/
+
+		int length = 0;
+		for (Node node = root; node.isRealNode(); node = k > node.key ? node.right : node.left) {
+			length++;
+			if (node.key == k) {
+				break;
+			}
+		}
+		return length;
+	}
+
+	private Node countedSearch(int k) {
+		/**
+		 * the search loop for a tree with metrics: returns the node with key
+		 * k, or a virtual leaf, and counts the real nodes on the way
+		 **/
+
+		int length = 0;
+		Node node = root;
+		while (node.isRealNode()) {
+			length++;
+			if (node.key == k) {
+				break;
+			}
+			node = k > node.key ? node.right : node.left;
+		}
+		metrics.searchPath(length);
+		return node;
+	}
+
+	private Node countedSearchParent(int k) {
+		/**
+		 * recSearchParent(k, searchStart(k)) for a tree with metrics: returns
+		 * the same node, and counts the real nodes that walk visits, so the
+		 * path recorded is the one taken (in finger search mode, the climb
+		 * from the finger is part of it) 1. start as searchStart does,
+		 * climbing from the finger one node at a time as in climb 2. go down
+		 * as recSearchParent does
+		 **/
+
+		int length = 1;
+		Node node;
+		if (k > max.key) { // 1
+			node = max;
+		} else if (k < min.key) {
+			node = min;
+		} else if (fingerSearch && finger != null) {
+			node = finger;
+			boolean up = k >= node.key;
+			while (!node.parent.isSentinel && (up ? node.parent.key <= k : node.parent.key >= k)) {
+				node = node.parent;
+				length++;
+			}
+		} else {
+			node = root;
+		}
+		while (node.key != k) { // 2
+			Node next = k > node.key ? node.right : node.left;
+			if (!next.isRealNode()) {
+				break;
+			}
+			node = next;
+			length++;
+		}
+		metrics.searchPath(length);
+		return node;
+	}
+
 	public Node recSearch(int k, Node curRoot) {
+		/**
+		 * returns the node with key k in curRoot's sub tree, or the virtual
+		 * leaf if there is none 1. go right while k is bigger, left while it
+		 * is smaller, until reaching k or a virtual leaf
+		 **/
+
+		if (recursive) {
+			return recSearchRecursive(k, curRoot);
+		}
+		while (curRoot.isRealNode() && curRoot.key != k) { // 1
+			curRoot = k > curRoot.key ? curRoot.right : curRoot.left;
+		}
+		return curRoot;
+	}
+
+	private Node recSearchRecursive(int k, Node curRoot) {
 		/**
 		 * 1. checks if current root is a virtual leaf-->returns the current
 		 * root 2. checks if current root is the node we are looking for (by
@@ -112,12 +769,141 @@ public class Tree {
 		if (curRoot.key == k) { // 2
 			return curRoot;
 		} else if (k > curRoot.getKey()) { // 3
-			return recSearch(k, curRoot.right); // 3
+			return recSearchRecursive(k, curRoot.right); // 3
+		}
+		return recSearchRecursive(k, curRoot.left); // 4
+	}
+
+	private Node recSearchParent(int k, Node curRoot) {
+		/**
+		 * returns the node with key k, or the real node whose (virtual) son k
+		 * would be inserted as 1. go right while k is bigger, left while it is
+		 * smaller, until reaching k or a node without that son
+		 **/
+
+		if (recursive) {
+			return recSearchParentRecursive(k, curRoot);
+		}
+		while (curRoot.key != k) { // 1
+			Node next = k > curRoot.key ? curRoot.right : curRoot.left;
+			if (!next.isRealNode()) {
+				break;
+			}
+			curRoot = next;
+		}
+		return curRoot;
+	}
+
+	private Node recSearchParentRecursive(int k, Node curRoot) {
+		/**
+		 * returns the node with key k, or the real node whose (virtual) son k
+		 * would be inserted as 1. checks if current root is the node we are
+		 * looking for-->returns current root 2. else, if k is bigger and the
+		 * right son is real-->searching in the right sub tree 3. else, if k is
+		 * smaller and the left son is real-->searching in the left sub tree 4.
+		 * else, k belongs under current root-->returns current root
+		 **/
+
+		if (curRoot.key == k) { // 1
+			return curRoot;
+		} else if (k > curRoot.key) {
+			if (curRoot.right.isRealNode()) { // 2
+				return recSearchParentRecursive(k, curRoot.right);
+			}
+		} else if (curRoot.left.isRealNode()) { // 3
+			return recSearchParentRecursive(k, curRoot.left);
 		}
-		return recSearch(k, curRoot.left); // 4
+		return curRoot; // 4
 	}
 
 	private void rebalanceInsert(Node node) {
+		/**
+		 * the loop version of rebalanceInsertRecursive: promotes while node is
+		 * a (0,1) or (1,0) node and continues with its parent, and stops after
+		 * a rotation
+		 **/
+
+		if (recursive) {
+			rebalanceInsertRecursive(node);
+			return;
+		}
+		while (true) {
+			if (node.is01Node() || node.is10Node()) {
+				promote(node);
+				this.rebalanceCounter++;
+				if (node.parent.isSentinel) {
+					return;
+				}
+				node = node.parent;
+			} else {
+				if (node.is02Node()) {
+					if (node.left.is12Node()) {
+						singleRotationRightI(node);
+						this.rebalanceCounter++;
+					} else if (node.left.is21Node()) {
+						doubleRotationRightI(node);
+						this.rebalanceCounter = this.rebalanceCounter + 2;
+					}
+				} else if (node.is20Node()) {
+					if (node.right.is21Node()) {
+						singleRotationLeftI(node);
+						this.rebalanceCounter++;
+					} else if (node.right.is12Node()) {
+						doubleRotationLeftI(node);
+						this.rebalanceCounter = this.rebalanceCounter + 2;
+					}
+				}
+				return;
+			}
+		}
+	}
+
+	private void rebalanceInsertPlusSize(Node node) {
+		/**
+		 * rebalanceInsert and PlusSize in one upward pass 1. increase node's
+		 * size (before a rotation, which expects it) 2. promote and continue
+		 * with the parent, or rotate, as in rebalanceInsert 3. once node is
+		 * rebalanced, only the sizes of its ancestors are left to increase
+		 **/
+
+		Node up;
+		while (true) {
+			up = node.parent;
+			if (orderStatistics) { // 1
+				node.size++;
+			}
+			if (node.is01Node() || node.is10Node()) { // 2
+				promote(node);
+				this.rebalanceCounter++;
+				if (up.isSentinel) {
+					return;
+				}
+				node = up;
+				continue;
+			}
+			if (node.is02Node()) {
+				if (node.left.is12Node()) {
+					singleRotationRightI(node);
+					this.rebalanceCounter++;
+				} else if (node.left.is21Node()) {
+					doubleRotationRightI(node);
+					this.rebalanceCounter = this.rebalanceCounter + 2;
+				}
+			} else if (node.is20Node()) {
+				if (node.right.is21Node()) {
+					singleRotationLeftI(node);
+					this.rebalanceCounter++;
+				} else if (node.right.is12Node()) {
+					doubleRotationLeftI(node);
+					this.rebalanceCounter = this.rebalanceCounter + 2;
+				}
+			}
+			break;
+		}
+		PlusSize(up); // 3
+	}
+
+	private void rebalanceInsertRecursive(Node node) {
 		/**
 		 * 1. checks if node's rank difference is (0,1) (1,0) 2. promotes node
 		 * rank by 1 3. add 1 to rebalance counter 3. if node's parent is not
@@ -134,10 +920,10 @@ public class Tree {
 		 **/
 
 		if (node.is01Node() || node.is10Node()) { // 1
-			node.rank++; // 2
+			promote(node); // 2
 			this.rebalanceCounter++; // 3
 			if (node.parent.isSentinel == false) { // 3
-				rebalanceInsert(node.parent); // 3
+				rebalanceInsertRecursive(node.parent); // 3
 			}
 		} else if (node.is02Node()) { // 4
 			if (node.left.is12Node()) { // 4.1
@@ -159,6 +945,147 @@ public class Tree {
 	}
 
 	private void rebalanceDelete(Node node) {
+		/**
+		 * the loop version of rebalanceDeleteRecursive: applies the same fixes
+		 * (1, 6 and 8 below) to node and then to each of its ancestors up to
+		 * the root. the recursive version may fix the parent before checking 6
+		 * and 8 on node, but after a fix in 1 node is never a (3,1) or (1,3)
+		 * node, so the order doesn't change the outcome
+		 **/
+
+		if (recursive) {
+			rebalanceDeleteRecursive(node);
+			return;
+		}
+		while (true) {
+			fixDelete(node);
+			if (node.parent.isSentinel) {
+				return;
+			}
+			node = node.parent;
+		}
+	}
+
+	private void rebalanceDeleteMinusSize(Node node, Node moved, int movedRank) {
+		/**
+		 * rebalanceDelete and MinusSize in one upward pass, from a node that
+		 * lost a leaf or an unary son (so no rank above it changed yet) 1.
+		 * decrease the size of each of node's original ancestors before fixing
+		 * it (a rotation copies the fixed size to the node that replaces it,
+		 * which is then only checked) 2. fix node as in rebalanceDelete 3. if
+		 * the fix neither demoted nor moved node, nothing above it can need a
+		 * fix: only the sizes are left 4. if the son was the predecessor that
+		 * switchToPredecessor moved up (moved, which took a node of rank
+		 * movedRank), subTreeRank may have changed the ranks of moved and its
+		 * left son: a stop below them goes on from moved's left son instead,
+		 * and moved's position is done once the sub tree there has movedRank
+		 * again 5. continue with the parent up to the root
+		 **/
+
+		Node sizeNext = node;
+		while (true) {
+			if (node == sizeNext) { // 1
+				sizeNext = node.parent;
+				if (orderStatistics) {
+					node.size--;
+				}
+			}
+			int rank = node.rank;
+			Node parent = node.parent;
+			boolean atMovedLeft = moved != null && node == moved.left;
+			fixDelete(node); // 2
+			if (node == moved) { // 4
+				moved = null;
+				Node top = node.parent == parent ? node : node.parent;
+				if (top.rank == movedRank) {
+					MinusSize(sizeNext);
+					return;
+				}
+				node = top;
+			} else if (!atMovedLeft && node.rank == rank && node.parent == parent) {
+				if (moved == null) { // 3
+					MinusSize(sizeNext);
+					return;
+				}
+				Node left = moved.left; // 4
+				if (orderStatistics) {
+					for (; sizeNext != left; sizeNext = sizeNext.parent) {
+						sizeNext.size--;
+					}
+				}
+				sizeNext = left;
+				node = left;
+				continue;
+			}
+			if (node.parent.isSentinel) { // 5
+				return;
+			}
+			node = node.parent;
+		}
+	}
+
+	private void minusSizeAndRebalance(Node node, Node moved, int movedRank) {
+		/**
+		 * decreases the sizes of node and its ancestors and rebalances from
+		 * node (and then from moved, if not null), in one pass unless the tree
+		 * is recursive; the pass stops once the rebalancing is done (see
+		 * rebalanceDeleteMinusSize)
+		 **/
+
+		if (recursive) {
+			MinusSize(node);
+			rebalanceDelete(node);
+			if (moved != null) {
+				rebalanceDelete(moved);
+			}
+		} else {
+			rebalanceDeleteMinusSize(node, moved, movedRank);
+		}
+	}
+
+	private void fixDelete(Node node) {
+		/** one step of rebalanceDelete: the fixes for node itself **/
+
+		if ((isLeaf(node) && node.is22Node()) || node.is23Node() || node.is32Node()) {
+			demote(node);
+			this.rebalanceCounter++;
+			if (isLeaf(node)) {
+				node.rank = 0;
+				this.rebalanceCounter++;
+				if (metrics != null) {
+					metrics.demotion();
+				}
+			}
+		}
+		if (node.is31Node()) {
+			if (node.right.is22Node()) {
+				demote(node.right);
+				demote(node);
+				this.rebalanceCounter = this.rebalanceCounter + 2;
+			} else if (node.right.is11Node() || node.right.is21Node()) {
+				singleRotationLeftD(node);
+				this.rebalanceCounter++;
+			} else if (node.right.is12Node()) {
+				doubleRotationLeftD(node);
+				this.rebalanceCounter = this.rebalanceCounter + 2;
+			}
+		}
+		if (node.is13Node()) {
+			if (node.left.is22Node()) {
+				demote(node);
+				demote(node.left);
+				this.rebalanceCounter = this.rebalanceCounter + 2;
+			} else if (node.left.is11Node() || node.left.is12Node()) {
+				singleRotationRightD(node);
+				this.rebalanceCounter++;
+			} else if (node.left.is21Node()) {
+				doubleRotationRightD(node);
+				this.rebalanceCounter = this.rebalanceCounter + 2;
+			}
+		}
+	}
+
+	private void rebalanceDeleteRecursive(Node node) {
 		/**
 		 * 1. checks if node's rank difference is (2,2) and node is a leaf or
 		 * rank dofference is (2,3) or (3,2) 2. demote 3. add 1 to rebalance
@@ -187,9 +1114,12 @@ public class Tree {
 			if (isLeaf(node)) { // 4
 				node.rank = 0; // 4
 				this.rebalanceCounter++; // 4
+				if (metrics != null) {
+					metrics.demotion();
+				}
 			}
 			if (!node.parent.isSentinel) { // 5
-				rebalanceDelete(node.parent); // 5
+				rebalanceDeleteRecursive(node.parent); // 5
 			}
 		}
 		if (node.is31Node()) { // 6
@@ -198,7 +1128,7 @@ public class Tree {
 				demote(node); // 6.1
 				this.rebalanceCounter = this.rebalanceCounter + 2; // 6.1.1
 				if (!node.parent.isSentinel) { // 7
-					rebalanceDelete(node.parent); // 7
+					rebalanceDeleteRecursive(node.parent); // 7
 				}
 			} else if (node.right.is11Node() || node.right.is21Node()) { // 6.2
 				singleRotationLeftD(node); // 6.2
@@ -214,7 +1144,7 @@ public class Tree {
 				demote(node.left); // 8.1
 				this.rebalanceCounter = this.rebalanceCounter + 2; // 8.1.1
 				if (!node.parent.isSentinel) { // 9
-					rebalanceDelete(node.parent); // 9
+					rebalanceDeleteRecursive(node.parent); // 9
 				}
 			} else if (node.left.is11Node() || node.left.is12Node()) { // 8.2
 				singleRotationRightD(node); // 8.2
@@ -225,7 +1155,7 @@ public class Tree {
 			}
 		}
 		if (!node.parent.isSentinel) // 10
-			rebalanceDelete(node.parent); // 10
+			rebalanceDeleteRecursive(node.parent); // 10
 	}
 
 	/**
@@ -238,6 +1168,26 @@ public class Tree {
 	 */
 
 	public int insert(int k, String i) {
+		/**
+		 * insertItem, recorded as a TreeEvents.Insert if it takes longer than
+		 * the event's threshold
+		 **/
+
+		TreeEvents.Insert event = new TreeEvents.Insert();
+		event.begin();
+		int result = insertItem(k, i);
+		event.end();
+		if (event.shouldCommit()) {
+			event.key = k;
+			event.rebalances = result;
+			event.pathLength = pathLength(k);
+			event.treeSize = treeSize;
+			event.commit();
+		}
+		return result;
+	}
+
+	private int insertItem(int k, String i) {
 		/**
 		 * 1. checks if tree is empty 2. inserts as root 3.connects sentinel
 		 * with root 4. update min and max to be the root 5. if not empty search
@@ -247,54 +1197,111 @@ public class Tree {
 		 **/
 
 		if (empty()) { // 1
+			modCount++;
 			root = new Node(k, i); // 2
+			if (metrics != null) {
+				metrics.searchPath(0);
+				metrics.allocation();
+				metrics.rootRank(0);
+			}
 			root.parent = sentinel; // 3
 			sentinel.right = root; // 3
-			root.right = new Node(); // 2
-			root.right.parent = root; // 2
-			root.left = new Node(); // 2
-			root.left.parent = root; // 2
+			root.right = virtualLeaf; // 2
+			root.left = virtualLeaf; // 2
 			root.size = 1;
 			treeSize = 1;
 			root.rank = 0;
 			this.min = root; // 4
 			this.max = root; // 4
+			if (fingerSearch) {
+				finger = root;
+			}
 			return this.rebalanceCounter;
 		}
-		Node inNode = recSearch(k, root); // 5
+		Node inNode = metrics != null ? countedSearchParent(k) : recSearchParent(k, searchStart(k)); // 5
 		if (inNode.getKey() == k) { // 6
-			return -1; // 6
-		} else {
-			virtualLeafToLeaf(inNode, k, i); // 7
-			treeSize++;
-			if (inNode.key < this.min.key) { // 8
-				this.min = inNode;
-			}
-			if (inNode.key > this.max.key) { // 8
-				this.max = inNode;
+			if (fingerSearch) {
+				finger = inNode;
 			}
+			return -1; // 6
 		}
-		rebalanceInsert(inNode.parent); // 9
+		insertUnder(inNode, k, i); // 7 + 8 + 9
 		int temp = this.rebalanceCounter; // 10
 		this.rebalanceCounter = 0; // 10
 		return temp; // 10
 	}
 
+	private Node insertUnder(Node parent, int k, String i) {
+		/**
+		 * inserts k as a new leaf under parent, the node recSearchParent found
+		 * for it, and returns the new node 1. changes virtual leaf to leaf 2.
+		 * update min and max if needed 3. rebalance
+		 **/
+
+		modCount++;
+		Node inNode = virtualLeafToLeaf(parent, k, i); // 1
+		treeSize++;
+		if (inNode.key < this.min.key) { // 2
+			this.min = inNode;
+		}
+		if (inNode.key > this.max.key) { // 2
+			this.max = inNode;
+		}
+		rebalanceInsert(inNode.parent); // 3
+		if (fingerSearch) {
+			finger = inNode;
+		}
+		if (metrics != null) {
+			metrics.rootRank(root.rank);
+		}
+		return inNode;
+	}
+
 	private void PlusSize(Node node) {
+		/** increases size by 1 for node and all its ancestors **/
+
+		if (!orderStatistics) {
+			return;
+		}
+		if (recursive) {
+			PlusSizeRecursive(node);
+			return;
+		}
+		for (; !node.isSentinel; node = node.parent) {
+			node.size++;
+		}
+	}
+
+	private void PlusSizeRecursive(Node node) {
 		/** increases size by 1, and enter the function with node's parent **/
 
 		if (!node.isSentinel) {
 			node.size++;
-			PlusSize(node.parent);
+			PlusSizeRecursive(node.parent);
 		}
 	}
 
 	private void MinusSize(Node x) {
+		/** decreases size by 1 for x and all its ancestors **/
+
+		if (!orderStatistics) {
+			return;
+		}
+		if (recursive) {
+			MinusSizeRecursive(x);
+			return;
+		}
+		for (; !x.isSentinel; x = x.parent) {
+			x.size--;
+		}
+	}
+
+	private void MinusSizeRecursive(Node x) {
 		/** decreases size by 1, and enter the function with node's parent */
 
 		if (x.isSentinel == false) {
 			x.size--;
-			MinusSize(x.parent);
+			MinusSizeRecursive(x.parent);
 		}
 	}
 
@@ -308,11 +1315,31 @@ public class Tree {
 	 */
 
 	public int delete(int k) {
+		/**
+		 * deleteItem, recorded as a TreeEvents.Delete if it takes longer than
+		 * the event's threshold
+		 **/
+
+		TreeEvents.Delete event = new TreeEvents.Delete();
+		event.begin();
+		int result = deleteItem(k);
+		event.end();
+		if (event.shouldCommit()) {
+			event.key = k;
+			event.rebalances = result;
+			event.pathLength = pathLength(k);
+			event.treeSize = treeSize;
+			event.commit();
+		}
+		return result;
+	}
+
+	private int deleteItem(int k) {
 		/**
 		 * 1. checks if the tree is empty-->return -1 2. else, search for the
 		 * node we want to delete 3. if delNode is a virtual leaf or it doents
 		 * exist-->return -1 4. update min and max if needed 5. if delNode is a
-		 * leaf-->connects delNodeParent to a new virtual leaf (son) 5.1 update
+		 * leaf-->connects delNodeParent to the virtual leaf (son) 5.1 update
 		 * size 6. else, if delNode is an unary node-->connects delNodeParent to
 		 * delNode's existing son 6.1 update size 7. if delNode is a binary
 		 * node-->switch delNode with it's predecessor 8. if delNodeParent is
@@ -321,35 +1348,57 @@ public class Tree {
 		 **/
 
 		if (this.empty()) { // 1
+			if (metrics != null) {
+				metrics.searchPath(0);
+			}
 			return -1;
 		}
-		Node delNode = recSearch(k, root); // 2
-		if (delNode == null || delNode.key == -1) { // 3
+		Node delNode = metrics != null ? countedSearchParent(k) : recSearchParent(k, searchStart(k)); // 2
+		if (fingerSearch) {
+			finger = delNode;
+		}
+		if (delNode.key != k) { // 3
 			return -1;
 		}
-		if (delNode.key == this.min.key) { // 4
+		removeNode(delNode); // 4 - 10
+		int temp = this.rebalanceCounter; // 11
+		rebalanceCounter = 0;
+		return temp;
+	}
+
+	private void removeNode(Node delNode) {
+		/**
+		 * removes the real node delNode, steps 4 - 10 of delete
+		 **/
+
+		modCount++;
+		int k = delNode.key;
+		if (cache != null) {
+			cache.remove(k);
+		}
+		if (finger == delNode) { // its parent stays in the tree
+			finger = delNode.parent.isSentinel ? null : delNode.parent;
+		}
+		if (delNode == this.min) { // 4
 			this.min = Successor(delNode);
 			if (this.min == null) {
-				this.min = new Node();
+				this.min = virtualLeaf;
 			}
 		}
-		if (delNode.key == this.max.key) { // 4
+		if (delNode == this.max) { // 4
 			this.max = Predecessor(delNode);
 			if (this.max == null) {
-				this.max = new Node();
+				this.max = virtualLeaf;
 			}
 		}
-		boolean bool = isRightSon(delNode);
+		boolean isBinary = delNode.left.isRealNode() && delNode.right.isRealNode();
 		Node delNodeParent = delNode.parent;
 		if (isLeaf(delNode)) { // 5
-			Node son = new Node();
-			son.parent = delNodeParent;
 			if (isRightSon(delNode)) {
-				delNodeParent.right = son;
+				delNodeParent.right = virtualLeaf;
 			} else {
-				delNodeParent.left = son;
+				delNodeParent.left = virtualLeaf;
 			}
-			MinusSize(delNodeParent); // 5.1
 		} else if (delNode.right.isVirtualLeaf) { // 6
 			delNode.left.parent = delNodeParent;
 			if (isRightSon(delNode)) {
@@ -357,7 +1406,6 @@ public class Tree {
 			} else {
 				delNodeParent.left = delNode.left;
 			}
-			MinusSize(delNodeParent); // 6.1
 		} else if (delNode.left.isVirtualLeaf) { // 6
 			delNode.right.parent = delNodeParent;
 			if (isRightSon(delNode)) {
@@ -365,25 +1413,220 @@ public class Tree {
 			} else {
 				delNodeParent.left = delNode.right;
 			}
-			MinusSize(delNodeParent); // 6.1
-		} else { // 7
+		} else { // 7 + 8
 			switchToPredecessor(delNode);
-			if (bool) {
-				delNodeParent = delNodeParent.right;
-			} else {
-				delNodeParent = delNodeParent.left;
-			}
 		}
-		if (!delNodeParent.isSentinel) { // 8
-			rebalanceDelete(delNodeParent);
+		if (!isBinary && !delNodeParent.isSentinel) { // 5.1 + 6.1 + 8
+			minusSizeAndRebalance(delNodeParent, null, 0);
 		}
-		if (root.getKey() == k) { // 9
+		if (root == delNode) { // 9
 			root = sentinel.right;
 		}
 		treeSize--; // 10
-		int temp = this.rebalanceCounter; // 11
+		if (metrics != null) {
+			metrics.rootRank(root.rank);
+		}
+	}
+
+	/**
+	 * public int append(int k, String i)
+	 *
+	 * inserts an item with key k and info i, where k must be larger than every
+	 * key in the tree, and returns the number of rebalancing operations. The
+	 * item goes right under max with no search (insert does the same for any
+	 * key above max), and the rebalancing stops as soon as the tree is valid,
+	 * so on a tree without order statistics an append takes amortized O(1).
+	 * With them, the sizes of max's ancestors are still increased.
+	 *
+	 * throws IllegalArgumentException if k is not larger than every key
+	 */
+
+	public int append(int k, String i) {
+		if (!empty() && k <= max.key) {
+			throw new IllegalArgumentException("append needs a key above " + max.key + ", got " + k);
+		}
+		return insert(k, i);
+	}
+
+	/**
+	 * public String popMin()
+	 *
+	 * deletes the item with the smallest key and returns its info, or returns
+	 * null if the tree is empty. min is found with no search and has no left
+	 * son, and the rebalancing stops as soon as the tree is valid.
+	 */
+
+	public String popMin() {
+		if (empty()) {
+			return null;
+		}
+		String info = min.info;
+		removeNode(min);
 		rebalanceCounter = 0;
-		return temp;
+		return info;
+	}
+
+	/**
+	 * public String popMax()
+	 *
+	 * deletes the item with the largest key and returns its info, or returns
+	 * null if the tree is empty. the mirror of popMin.
+	 */
+
+	public String popMax() {
+		if (empty()) {
+			return null;
+		}
+		String info = max.info;
+		removeNode(max);
+		rebalanceCounter = 0;
+		return info;
+	}
+
+	/**
+	 * public int insertAll(int[] keys, String[] values)
+	 *
+	 * inserts the items (keys[j], values[j]) to the WAVL tree, as if insert
+	 * was called for each of them in ascending key order, and returns the
+	 * total number of rebalancing operations. keys that already exist in the
+	 * tree are skipped, and a key repeated in the batch keeps the first value
+	 * given for it. the batch is searched with one ascending walk over the
+	 * tree instead of a search from the root for every key.
+	 */
+
+	public int insertAll(int[] keys, String[] values) {
+		/**
+		 * 1. sort the batch by key, keeping every value with its key 2. for
+		 * each key, climb from the last node touched to the sub tree the key
+		 * belongs in 3. search down from there 4. if key exists skip it, else
+		 * insert it under the node found 5. sum the rebalancing operations
+		 **/
+
+		if (keys.length != values.length) {
+			throw new IllegalArgumentException(
+					"got " + keys.length + " keys and " + values.length + " values");
+		}
+		long[] order = sortedOrder(keys); // 1
+		int total = 0;
+		Node last = null;
+		for (long entry : order) {
+			int j = (int) entry;
+			int k = keys[j];
+			if (empty()) {
+				total += insert(k, values[j]);
+				last = root;
+				continue;
+			}
+			Node from = last == null ? root : climb(last, k); // 2
+			Node inNode = recSearchParent(k, from); // 3
+			if (inNode.getKey() == k) { // 4
+				last = inNode;
+				continue;
+			}
+			last = insertUnder(inNode, k, values[j]); // 4
+			total += this.rebalanceCounter; // 5
+			this.rebalanceCounter = 0;
+		}
+		return total;
+	}
+
+	/**
+	 * public int deleteAll(int[] keys)
+	 *
+	 * deletes the items with the given keys from the WAVL tree, as if delete
+	 * was called for each of them in ascending order, and returns the total
+	 * number of rebalancing operations. keys that are not in the tree are
+	 * skipped. like insertAll, the batch is searched with one ascending walk.
+	 */
+
+	public int deleteAll(int[] keys) {
+		/**
+		 * 1. sort the batch 2. for each key, climb from the predecessor of the
+		 * last deleted node to the sub tree the key belongs in 3. search down
+		 * from there 4. if key doesn't exist skip it, else remember its
+		 * predecessor (it stays in the tree) and delete it 5. sum the
+		 * rebalancing operations
+		 **/
+
+		int[] sorted = keys.clone(); // 1
+		Arrays.sort(sorted);
+		int total = 0;
+		Node last = null;
+		for (int k : sorted) {
+			if (empty()) {
+				break;
+			}
+			Node from = last == null ? root : climb(last, k); // 2
+			Node delNode = recSearch(k, from); // 3
+			if (delNode == null || !delNode.isRealNode()) { // 4
+				continue;
+			}
+			last = Predecessor(delNode); // 4
+			removeNode(delNode);
+			total += this.rebalanceCounter; // 5
+			this.rebalanceCounter = 0;
+		}
+		return total;
+	}
+
+	private Node climb(Node start, int k) {
+		/**
+		 * start is a real node. returns the lowest ancestor of start whose
+		 * sub tree is where k is or should be: for k above start, climb as
+		 * long as the parent's key is not above k. when the walk stops under a
+		 * parent with a larger key, every key between start and k is in the
+		 * current sub tree. for k below start, the same with the sides
+		 * swapped.
+		 **/
+
+		Node node = start;
+		if (k >= node.key) {
+			while (!node.parent.isSentinel && node.parent.key <= k) {
+				node = node.parent;
+			}
+		} else {
+			while (!node.parent.isSentinel && node.parent.key >= k) {
+				node = node.parent;
+			}
+		}
+		return node;
+	}
+
+	private Node searchStart(int k) {
+		/**
+		 * where recSearchParent for k starts, in a non empty tree: max for a
+		 * key above it (an append goes right under it), min for a key below
+		 * it, else, in finger search mode, the lowest ancestor of the finger
+		 * whose sub tree k is in, or else the root
+		 **/
+
+		if (k > max.key) {
+			return max;
+		}
+		if (k < min.key) {
+			return min;
+		}
+		return fingerSearch && finger != null ? climb(finger, k) : root;
+	}
+
+	private static long[] sortedOrder(int[] keys) {
+		/**
+		 * returns the indices of keys ordered by key and then by index, each
+		 * packed under its key in one long so sorting needs no boxing
+		 **/
+
+		long[] order = new long[keys.length];
+		boolean sorted = true;
+		for (int j = 0; j < keys.length; j++) {
+			order[j] = ((long) keys[j] << 32) | j;
+			if (j > 0 && keys[j] < keys[j - 1]) {
+				sorted = false;
+			}
+		}
+		if (!sorted) {
+			Arrays.sort(order);
+		}
+		return order;
 	}
 
 	/**
@@ -426,6 +1669,23 @@ public class Tree {
 	 */
 
 	public int[] keysToArray() {
+		/**
+		 * collectKeys, recorded as a TreeEvents.KeysToArray if it takes longer
+		 * than the event's threshold
+		 **/
+
+		TreeEvents.KeysToArray event = new TreeEvents.KeysToArray();
+		event.begin();
+		int[] arr = collectKeys();
+		event.end();
+		if (event.shouldCommit()) {
+			event.treeSize = treeSize;
+			event.commit();
+		}
+		return arr;
+	}
+
+	private int[] collectKeys() {
 		/**
 		 * 1. checks if the tree is empty-->returns an empty array 2. else,
 		 * initial a new array in the size of the tree 3. insert min in index 0
@@ -535,14 +1795,15 @@ public class Tree {
 		 * 1. find node's predecessor 2. if the predecessor is not node's left
 		 * son-->replace and delete 3. else-->replace differently and delete 4.
 		 * update sub tree rank if needed (before rebalance) 5. decreases the
-		 * sizes if needed 6. if predParent is not a sentinel-->rebalance
+		 * sizes if needed 6. if predParent is not a sentinel-->rebalance, in
+		 * one bounded pass from predParent through pred's new position, which
+		 * only goes on past that position if the rank there changed
 		 **/
 
 		Node pred = Predecessor(node); // 1
 		Node predParent = pred.parent;
 		Node nodeParent = node.parent;
-		Node predLeftSon = pred.left;
-		if (node.left.key != pred.key) { // 2
+		if (node.left != pred) { // 2
 			pred.left.parent = pred.parent;
 			pred.parent.right = pred.left;
 			pred.left = node.left;
@@ -561,13 +1822,44 @@ public class Tree {
 		pred.rank = node.rank;
 		pred.size = node.size;
 		subTreeRank(pred); // 4
-		MinusSize(predLeftSon.parent); // 5
-		if (!predParent.isSentinel) { // 6
-			rebalanceDelete(predParent);
+		if (!predParent.isSentinel) { // 5 + 6
+			minusSizeAndRebalance(predParent, pred, node.rank);
 		}
 	}
 
 	private int subTreeRank(Node node) {
+		/**
+		 * the loop version of subTreeRankRecursive 1. go down the left sons of
+		 * node until a virtual leaf or a (2,2) node that is not a leaf, whose
+		 * rank stays 2. go back up to node through the parents, updating each
+		 * rank from its right son and the rank below it 3. count every rank
+		 * that changed
+		 **/
+
+		if (recursive) {
+			return subTreeRankRecursive(node);
+		}
+		Node cur = node;
+		Node last = null;
+		while (cur.isRealNode() && !(cur.is22Node() && !isLeaf(cur))) { // 1
+			last = cur;
+			cur = cur.left;
+		}
+		int rank = cur.isRealNode() ? cur.rank : -1;
+		while (last != null) { // 2
+			int oldRank = last.rank;
+			last.rank = Math.max(last.right.rank, rank) + 1;
+			if (last.rank != oldRank) { // 3
+				rebalanceCounter++;
+				countRankChange(oldRank, last.rank);
+			}
+			rank = last.rank;
+			last = last == node ? null : last.parent;
+		}
+		return rank;
+	}
+
+	private int subTreeRankRecursive(Node node) {
 		/**
 		 * 1. if node is not a virtual leaf 1.1 and if node has rank difference
 		 * of (2,2)-->return node's rank 2. save node's rank before changing it
@@ -580,9 +1872,10 @@ public class Tree {
 				return node.rank;
 			}
 			int oldRank = node.rank; // 2
-			node.rank = Math.max(node.right.rank, subTreeRank(node.left)) + 1; // 3
+			node.rank = Math.max(node.right.rank, subTreeRankRecursive(node.left)) + 1; // 3
 			if (node.rank != oldRank) { // 4
 				rebalanceCounter++;
+				countRankChange(oldRank, node.rank);
 			}
 		} else { // 5
 			return -1;
@@ -597,6 +1890,23 @@ public class Tree {
 	 */
 
 	public String[] infoToArray() {
+		/**
+		 * collectInfo, recorded as a TreeEvents.InfoToArray if it takes longer
+		 * than the event's threshold
+		 **/
+
+		TreeEvents.InfoToArray event = new TreeEvents.InfoToArray();
+		event.begin();
+		String[] arr = collectInfo();
+		event.end();
+		if (event.shouldCommit()) {
+			event.treeSize = treeSize;
+			event.commit();
+		}
+		return arr;
+	}
+
+	private String[] collectInfo() {
 		/**
 		 * 1. if the tree is empty-->returns an empty array 2. else, create an
 		 * array of the tree size 3. insert the min node to index 0 in the array
@@ -618,31 +1928,133 @@ public class Tree {
 	}
 
 	/**
-	 * public int size()
-	 *
-	 * Returns the number of nodes in the tree.
+	 * public int size()
+	 *
+	 * Returns the number of nodes in the tree.
+	 *
+	 * precondition: none postcondition: none
+	 */
+
+	public int size() {
+		return treeSize;
+	}
+
+	/**
+	 * public int getRoot()
+	 *
+	 * Returns the root WAVL node, or null if the tree is empty
+	 *
+	 * precondition: none postcondition: none
+	 */
+
+	public IWAVLNode getRoot() {
+
+		if (empty()) {
+			return null;
+		}
+		return root;
+	}
+
+	/** true if the tree keeps the sub tree sizes select and rank use **/
+
+	boolean hasOrderStatistics() {
+		return orderStatistics;
+	}
+
+	/**
+	 * public void setMetrics(TreeMetrics metrics)
+	 *
+	 * starts counting this tree's rebalancing steps, search paths and new
+	 * nodes in metrics, or stops if metrics is null. Trees made by join, split
+	 * or the set operations start without metrics.
+	 */
+
+	public void setMetrics(TreeMetrics metrics) {
+		this.metrics = metrics;
+		if (metrics != null) {
+			metrics.rootRank(root.rank);
+		}
+	}
+
+	/**
+	 * public void setFingerSearch(boolean on)
+	 *
+	 * turns finger search on or off. With it on, search, insert and delete
+	 * remember the node they ended at (the finger) and the next one climbs
+	 * from there only as far as the sub tree its key is in, then goes down,
+	 * so a key next to the last one is found in a few steps instead of a walk
+	 * from the root. A key above max is inserted right under max, so
+	 * ascending appends don't search at all. The tree, and so every result,
+	 * is the same either way.
+	 */
+
+	public void setFingerSearch(boolean on) {
+		fingerSearch = on;
+		finger = null;
+	}
+
+	/**
+	 * public void setSearchCache(int capacity)
+	 *
+	 * puts a direct-mapped cache of capacity slots (rounded up to a power of
+	 * two) in front of search, or removes it if capacity is 0, and starts the
+	 * hit and miss counts over. A search whose key is in its slot returns
+	 * without walking the tree; delete drops the key from the cache, and
+	 * insert never changes the info of a key that is already there, so a
+	 * cached info is always the tree's. With a cache search writes to the
+	 * tree's state, so it must not run alongside other searches;
+	 * ConcurrentTreeView rejects a tree with a cache, and its locked searches
+	 * (and ShardedTree's) never use one.
+	 *
+	 * throws IllegalArgumentException if capacity is negative
+	 */
+
+	public void setSearchCache(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("cache capacity must not be negative, got " + capacity);
+		}
+		cache = capacity == 0 ? null : new SearchCache(capacity);
+	}
+
+	/**
+	 * public int getSearchCacheCapacity()
+	 *
+	 * returns the number of slots in the search cache, or 0 if there is none
+	 */
+
+	public int getSearchCacheCapacity() {
+		return cache == null ? 0 : cache.capacity();
+	}
+
+	/**
+	 * public long getSearchCacheHits()
 	 *
-	 * precondition: none postcondition: none
+	 * returns the number of searches the cache answered since it was set
 	 */
 
-	public int size() {
-		return treeSize;
+	public long getSearchCacheHits() {
+		return cache == null ? 0 : cache.hits();
 	}
 
 	/**
-	 * public int getRoot()
+	 * public long getSearchCacheMisses()
 	 *
-	 * Returns the root WAVL node, or null if the tree is empty
-	 *
-	 * precondition: none postcondition: none
+	 * returns the number of searches that walked the tree since the cache was
+	 * set
 	 */
 
-	public IWAVLNode getRoot() {
+	public long getSearchCacheMisses() {
+		return cache == null ? 0 : cache.misses();
+	}
 
-		if (empty()) {
-			return null;
-		}
-		return root;
+	/**
+	 * public TreeMetrics getMetrics()
+	 *
+	 * returns the metrics this tree counts in, or null if it has none
+	 */
+
+	public TreeMetrics getMetrics() {
+		return metrics;
 	}
 
 	/**
@@ -655,15 +2067,40 @@ public class Tree {
 	 * value of the node minimal node's successor
 	 *
 	 * precondition: size() >= i > 0 postcondition: none
+	 *
+	 * throws UnsupportedOperationException if the tree doesn't keep order
+	 * statistics
 	 */
 
 	public String select(int i) {
+		/**
+		 * selectItem, recorded as a TreeEvents.Select if it takes longer than
+		 * the event's threshold
+		 **/
+
+		TreeEvents.Select event = new TreeEvents.Select();
+		event.begin();
+		String result = selectItem(i);
+		event.end();
+		if (event.shouldCommit()) {
+			event.index = i;
+			event.pathLength = selectPathLength(i);
+			event.treeSize = treeSize;
+			event.commit();
+		}
+		return result;
+	}
+
+	private String selectItem(int i) {
 		/**
 		 * 1. if we dont have a node with i nodes smaller (by keys)-->returns
 		 * "-1" 2. if i isnt legal-->returns "-1" 3. else, this node
 		 * exists-->find is in recSelect
 		 **/
 
+		if (!orderStatistics) {
+			throw new UnsupportedOperationException("select needs a tree with order statistics");
+		}
 		if (this.empty() || i >= treeSize) { // 1
 			return "-1";
 		}
@@ -673,7 +2110,56 @@ public class Tree {
 		return recSelect(root, i); // 3
 	}
 
+	private int selectPathLength(int i) {
+		/**
+		 * the number of real nodes select(i) passes, or 0 if there is no such
+		 * item, for the events that are recorded
+		 **/
+
+		if (i < 0 || i >= treeSize) {
+			return 0;
+		}
+		int length = 1;
+		Node node = root;
+		while (true) {
+			int leftSize = node.left.getSubtreeSize();
+			if (i == leftSize) {
+				return length;
+			} else if (i < leftSize) {
+				node = node.left;
+			} else {
+				i = i - leftSize - 1;
+				node = node.right;
+			}
+			length++;
+		}
+	}
+
 	private String recSelect(Node curRoot, int i) {
+		/**
+		 * 1. if the left sub tree has exactly i nodes-->returns the value of
+		 * current root 2. else, if it has more-->continue in the left sub tree
+		 * 3. else, continue in the right sub tree, skipping the left sub tree
+		 * and current root
+		 **/
+
+		if (recursive) {
+			return recSelectRecursive(curRoot, i);
+		}
+		while (true) {
+			int leftSize = curRoot.left.getSubtreeSize();
+			if (i == leftSize) { // 1
+				return curRoot.getValue();
+			} else if (i < leftSize) { // 2
+				curRoot = curRoot.left;
+			} else { // 3
+				i = i - leftSize - 1;
+				curRoot = curRoot.right;
+			}
+		}
+	}
+
+	private String recSelectRecursive(Node curRoot, int i) {
 		/**
 		 * 1. saving sub tree size of the left son of the current root 2. if it
 		 * equals to i-->returns the value of current root 3. else, if if bigger
@@ -685,9 +2171,433 @@ public class Tree {
 		if (i == leftSize) { // 2
 			return curRoot.getValue();
 		} else if (i < leftSize) { // 3
-			return recSelect(curRoot.left, i);
+			return recSelectRecursive(curRoot.left, i);
 		} else
-			return recSelect(curRoot.right, i - leftSize - 1); // 4
+			return recSelectRecursive(curRoot.right, i - leftSize - 1); // 4
+	}
+
+	/**
+	 * public int rank(int k)
+	 *
+	 * Returns the number of keys in the tree smaller than k, in O(log n). if k
+	 * is in the tree, select(rank(k)) returns its info.
+	 *
+	 * throws UnsupportedOperationException if the tree doesn't keep order
+	 * statistics
+	 */
+
+	public int rank(int k) {
+		/**
+		 * 1. walk down from the root toward k 2. every time we go right, the
+		 * left sub tree and current node are smaller than k
+		 **/
+
+		if (!orderStatistics) {
+			throw new UnsupportedOperationException("rank needs a tree with order statistics");
+		}
+		int count = 0;
+		Node node = root;
+		while (node.isRealNode()) { // 1
+			if (k <= node.key) {
+				node = node.left;
+			} else { // 2
+				count = count + node.left.getSubtreeSize() + 1;
+				node = node.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * public int rangeCount(int lo, int hi)
+	 *
+	 * Returns the number of keys k in the tree with lo <= k <= hi (0 if lo >
+	 * hi), in O(log n) from the sub tree sizes.
+	 *
+	 * throws UnsupportedOperationException if the tree doesn't keep order
+	 * statistics
+	 */
+
+	public int rangeCount(int lo, int hi) {
+		if (lo > hi) {
+			return 0;
+		}
+		int atMostHi = hi == Integer.MAX_VALUE ? rankAll() : rank(hi + 1);
+		return atMostHi - rank(lo);
+	}
+
+	private int rankAll() {
+		/** rank of a key above every key, with the same checks as rank **/
+
+		if (!orderStatistics) {
+			throw new UnsupportedOperationException("rank needs a tree with order statistics");
+		}
+		return treeSize;
+	}
+
+	/**
+	 * public Cursor cursor()
+	 *
+	 * Returns a cursor over all the items, in ascending key order
+	 */
+
+	public Cursor cursor() {
+		return new Cursor(Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+	}
+
+	/**
+	 * public Cursor descendingCursor()
+	 *
+	 * Returns a cursor over all the items, in descending key order
+	 */
+
+	public Cursor descendingCursor() {
+		return new Cursor(Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+	}
+
+	/**
+	 * public Cursor range(int lo, int hi)
+	 *
+	 * Returns a cursor over the items with lo <= key <= hi, in ascending key
+	 * order. the cursor finds the first item in O(log n) and then moves one
+	 * successor per next(), so nothing is copied.
+	 */
+
+	public Cursor range(int lo, int hi) {
+		return new Cursor(lo, hi, false);
+	}
+
+	/**
+	 * public Cursor descendingRange(int lo, int hi)
+	 *
+	 * Returns a cursor over the items with lo <= key <= hi, in descending key
+	 * order
+	 */
+
+	public Cursor descendingRange(int lo, int hi) {
+		return new Cursor(lo, hi, true);
+	}
+
+	private Node ceiling(int k) {
+		/**
+		 * returns the node with the smallest key >= k, or null if there is
+		 * none 1. walk down from the root toward k 2. every time we go left,
+		 * current node is the best candidate so far
+		 **/
+
+		Node candidate = null;
+		Node node = root;
+		while (node.isRealNode()) { // 1
+			if (k <= node.key) { // 2
+				candidate = node;
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+		return candidate;
+	}
+
+	private Node floor(int k) {
+		/**
+		 * returns the node with the largest key <= k, or null if there is none
+		 * (the mirror of ceiling)
+		 **/
+
+		Node candidate = null;
+		Node node = root;
+		while (node.isRealNode()) {
+			if (k >= node.key) {
+				candidate = node;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return candidate;
+	}
+
+	/**
+	 * public class Cursor
+	 *
+	 * A position in the tree that moves one item per next(), in ascending or
+	 * descending key order, without allocating. it starts before its first
+	 * item: call next() and, while it returns true, read key() and value().
+	 * seek(k) moves it back before the first item at or after k, so one
+	 * cursor can be reused for many scans.
+	 *
+	 * the cursor is fail-fast: if the tree is changed other than through
+	 * seek, the next call to next() throws ConcurrentModificationException.
+	 * seek finds its place from the root again, so it is always safe to call.
+	 */
+
+	public class Cursor {
+
+		private final int lo;
+		private final int hi;
+		private final boolean descending;
+		private Node next;
+		private Node current;
+		private int expectedModCount;
+
+		private Cursor(int lo, int hi, boolean descending) {
+			this.lo = lo;
+			this.hi = hi;
+			this.descending = descending;
+			seek(descending ? hi : lo);
+		}
+
+		/**
+		 * public void seek(int k)
+		 *
+		 * moves the cursor so that next() returns the first item in its range
+		 * with key >= k (or key <= k for a descending cursor), in O(log n)
+		 */
+
+		public void seek(int k) {
+			/**
+			 * 1. find the first node in the cursor's order 2. if it is out of
+			 * the range-->the cursor is done
+			 **/
+
+			expectedModCount = modCount;
+			current = null;
+			if (lo > hi) {
+				next = null;
+			} else if (descending) { // 1
+				next = floor(Math.min(k, hi));
+				if (next != null && next.key < lo) { // 2
+					next = null;
+				}
+			} else { // 1
+				next = ceiling(Math.max(k, lo));
+				if (next != null && next.key > hi) { // 2
+					next = null;
+				}
+			}
+		}
+
+		/**
+		 * public boolean next()
+		 *
+		 * moves to the next item and returns true, or returns false if there
+		 * are no more items in the range
+		 */
+
+		public boolean next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			current = next;
+			if (current == null) {
+				return false;
+			}
+			if (descending) {
+				next = Predecessor(current);
+				if (next != null && next.key < lo) {
+					next = null;
+				}
+			} else {
+				next = Successor(current);
+				if (next != null && next.key > hi) {
+					next = null;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * public int key()
+		 *
+		 * returns the key of the current item
+		 */
+
+		public int key() {
+			return item().key;
+		}
+
+		/**
+		 * public String value()
+		 *
+		 * returns the info of the current item
+		 */
+
+		public String value() {
+			return item().info;
+		}
+
+		private Node item() {
+			if (current == null) {
+				throw new NoSuchElementException("the cursor is not on an item");
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * public Spliterator<IWAVLNode> spliterator()
+	 *
+	 * Returns a spliterator over the items (as nodes), in ascending key order.
+	 * trySplit hands off the left sub tree of what is left and keeps the rest,
+	 * so the sizes of both halves are exact (SIZED and SUBSIZED). a tree
+	 * without order statistics can't size a sub tree, so its spliterator does
+	 * not split. the spliterator is fail-fast, like Cursor.
+	 */
+
+	public Spliterator<IWAVLNode> spliterator() {
+		return new ItemSpliterator(null, root, treeSize, modCount);
+	}
+
+	/**
+	 * public Stream<IWAVLNode> stream()
+	 *
+	 * Returns a sequential stream of the items (as nodes), in ascending key
+	 * order. call parallel() on it to split the work by sub trees.
+	 */
+
+	public Stream<IWAVLNode> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * public IntStream keys()
+	 *
+	 * Returns a sequential stream of the keys, in ascending order, which
+	 * splits like stream()
+	 */
+
+	public IntStream keys() {
+		return StreamSupport.intStream(new KeySpliterator(null, root, treeSize, modCount), false);
+	}
+
+	/**
+	 * the items left to a spliterator: head (if not null) and then all of
+	 * sub's sub tree, where sub is head's right son. splitting off sub's left
+	 * sub tree (with head) leaves sub and its right sub tree, which has the
+	 * same shape. once it has started walking, the spliterator moves one
+	 * successor per item and no longer splits.
+	 **/
+
+	private abstract class SubtreeSpliterator<S> {
+
+		private Node head;
+		private Node sub;
+		private int remaining;
+		private Node last;
+		private final int expectedModCount;
+
+		SubtreeSpliterator(Node head, Node sub, int remaining, int expectedModCount) {
+			this.head = head;
+			this.sub = sub;
+			this.remaining = remaining;
+			this.expectedModCount = expectedModCount;
+		}
+
+		/** the spliterator for the given prefix of the items **/
+		abstract S prefix(Node head, Node sub, int size, int expectedModCount);
+
+		final Node advance() {
+			/**
+			 * returns the next node, or null if there are no more 1. the first
+			 * node is head, or the min of sub 2. then successors
+			 **/
+
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (remaining == 0) {
+				return null;
+			}
+			if (last == null) { // 1
+				last = head != null ? head : localMin(sub);
+			} else { // 2
+				last = Successor(last);
+			}
+			remaining--;
+			return last;
+		}
+
+		public S trySplit() {
+			/**
+			 * 1. only an unstarted spliterator with a left sub tree to give
+			 * splits 2. hand off head and sub's left sub tree 3. keep sub and
+			 * its right sub tree
+			 **/
+
+			if (last != null || !orderStatistics || !sub.isRealNode() || !sub.left.isRealNode()) { // 1
+				return null;
+			}
+			int size = sub.left.size + (head != null ? 1 : 0); // 2
+			S prefix = prefix(head, sub.left, size, expectedModCount);
+			head = sub; // 3
+			sub = sub.right;
+			remaining = remaining - size;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			return remaining;
+		}
+
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL
+					| Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+	}
+
+	private final class ItemSpliterator extends SubtreeSpliterator<Spliterator<IWAVLNode>>
+			implements Spliterator<IWAVLNode> {
+
+		ItemSpliterator(Node head, Node sub, int remaining, int expectedModCount) {
+			super(head, sub, remaining, expectedModCount);
+		}
+
+		@Override
+		Spliterator<IWAVLNode> prefix(Node head, Node sub, int size, int expectedModCount) {
+			return new ItemSpliterator(head, sub, size, expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super IWAVLNode> action) {
+			Node node = advance();
+			if (node == null) {
+				return false;
+			}
+			action.accept(node);
+			return true;
+		}
+
+		@Override
+		public Comparator<? super IWAVLNode> getComparator() {
+			return Comparator.comparingInt(IWAVLNode::getKey);
+		}
+	}
+
+	private final class KeySpliterator extends SubtreeSpliterator<Spliterator.OfInt> implements Spliterator.OfInt {
+
+		KeySpliterator(Node head, Node sub, int remaining, int expectedModCount) {
+			super(head, sub, remaining, expectedModCount);
+		}
+
+		@Override
+		Spliterator.OfInt prefix(Node head, Node sub, int size, int expectedModCount) {
+			return new KeySpliterator(head, sub, size, expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			Node node = advance();
+			if (node == null) {
+				return false;
+			}
+			action.accept(node.key);
+			return true;
+		}
+
+		@Override
+		public Comparator<? super Integer> getComparator() {
+			return null;
+		}
 	}
 
 	/**
@@ -745,13 +2655,11 @@ public class Tree {
 
 		public Node(int key, String info) {
 			/**
-			 * a node builder 1. if we build a virtual leaf
+			 * a real node builder; any key, -1 included, is a real key (the
+			 * virtual leaf is built by Node())
 			 **/
 
 			this.key = key;
-			if (key == -1) { // 1
-				isVirtualLeaf = true;
-			}
 			this.info = info;
 		}
 
@@ -959,23 +2867,36 @@ public class Tree {
 		}
 	}
 
-	private void virtualLeafToLeaf(Node node, int k, String info) {
+	private Node virtualLeafToLeaf(Node parent, int k, String info) {
 		/**
-		 * 1. change the field that it will no longer be a virtual leaf 2.
-		 * creates 2 virtual leaves as the node's sons 3. update the size of
-		 * nodes in the tree if needed 4. send the parent to rebalance if needed
+		 * replaces the virtual son of parent that k belongs to with a new leaf
+		 * and returns it 1. creates the leaf, its sons are the virtual leaf 2.
+		 * connects it to parent 3. update the size of nodes in the tree if
+		 * needed 4. send the parent to rebalance if needed
 		 **/
 
-		node.key = k;
-		node.info = info;
+		Node node = new Node(k, info);
+		if (metrics != null) {
+			metrics.allocation();
+		}
 		node.isVirtualLeaf = false; // 1
 		node.rank = 0;
-		node.right = new Node(); // 2
-		node.right.parent = node;
-		node.left = new Node();
-		node.left.parent = node;
-		PlusSize(node); // 3
-		rebalanceInsert(node.parent); // 4
+		node.right = virtualLeaf; // 1
+		node.left = virtualLeaf;
+		node.parent = parent; // 2
+		if (k > parent.key) {
+			parent.right = node;
+		} else {
+			parent.left = node;
+		}
+		node.size = 1;
+		if (recursive) {
+			PlusSize(parent); // 3
+			rebalanceInsert(parent); // 4
+		} else {
+			rebalanceInsertPlusSize(parent); // 3 + 4
+		}
+		return node;
 	}
 
 	private void singleRotationRight(Node curRoot) {
@@ -1012,6 +2933,9 @@ public class Tree {
 		 * created a leaf with rank difference of(2,2)-->rebalance it
 		 **/
 
+		if (metrics != null) {
+			metrics.singleRotationDelete();
+		}
 		Node leftSon = curRoot.left;
 		int curRootOldSize = curRoot.size; // 1
 		int leftLeftSize = leftSon.left.size; // 1
@@ -1031,6 +2955,9 @@ public class Tree {
 		 * updating sizes and ranks if needed
 		 **/
 
+		if (metrics != null) {
+			metrics.singleRotationInsert();
+		}
 		Node leftSon = curRoot.left; // 1
 		Node leftLeftSon = leftSon.left; // 1
 		Node rightSon = curRoot.right; // 1
@@ -1057,6 +2984,9 @@ public class Tree {
 		 * root to double rotation 3. update ranks and sizes
 		 **/
 
+		if (metrics != null) {
+			metrics.doubleRotationInsert();
+		}
 		Node leftSon = curRoot.left;
 		Node leftRightSon = leftSon.right;
 		int leftSonOldSize = leftSon.size; // 1
@@ -1077,6 +3007,9 @@ public class Tree {
 		 * to double rotation right 3. updating ranks and sizes
 		 **/
 
+		if (metrics != null) {
+			metrics.doubleRotationDelete();
+		}
 		Node leftSon = curRoot.left;
 		Node leftRightSon = leftSon.right;
 		Node lrrSon = leftRightSon.right;
@@ -1126,6 +3059,9 @@ public class Tree {
 		 * root to single rotation left 3. updating ranks and sizes
 		 **/
 
+		if (metrics != null) {
+			metrics.singleRotationInsert();
+		}
 		Node rightSon = curRoot.right;
 		Node rightRightSon = rightSon.right;
 		int curRootOldSize = curRoot.size; // 1
@@ -1143,6 +3079,9 @@ public class Tree {
 		 * created a leaf with rank difference of (2,2)-->rebalance it
 		 **/
 
+		if (metrics != null) {
+			metrics.singleRotationDelete();
+		}
 		Node rightSon = curRoot.right;
 		int curRootOldSize = curRoot.size; // 1
 		int rightRightOldSize = rightSon.right.size; // 1
@@ -1157,12 +3096,12 @@ public class Tree {
 	}
 
 	private boolean isRightSon(Node node) {
-		/** returns true id node is the right son of its parent **/
+		/**
+		 * returns true id node is the right son of its parent, by identity: a
+		 * real node may have the virtual leaf's key -1
+		 **/
 
-		if (node.parent.right.getKey() == node.getKey()) {
-			return true;
-		}
-		return false;
+		return node.parent.right == node;
 	}
 
 	private void doubleRotationLeft(Node curRoot) {
@@ -1189,6 +3128,9 @@ public class Tree {
 		 * 1. send current root to double rotation left 2. updating ranks
 		 **/
 
+		if (metrics != null) {
+			metrics.doubleRotationInsert();
+		}
 		Node rightSon = curRoot.right;
 		doubleRotationLeft(curRoot); // 1
 		rightSon.parent.rank++; // 2
@@ -1203,6 +3145,9 @@ public class Tree {
 		 * rotation left 3. updating ranks and sizes
 		 **/
 
+		if (metrics != null) {
+			metrics.doubleRotationDelete();
+		}
 		Node rightSon = curRoot.right;
 		Node rightLeftSon = rightSon.left;
 		int curRootOldSize = curRoot.size; // 1
@@ -1220,10 +3165,34 @@ public class Tree {
 		rightSon.size = rightOldSize - 1 - lllOldSize; // 3
 	}
 
+	private void promote(Node node) {
+		/** increases the rank by 1 **/
+
+		node.rank++;
+		if (metrics != null) {
+			metrics.promotion();
+		}
+	}
+
 	private void demote(Node node) {
 		/** decreases the rank by 1 **/
 
 		node.rank--;
+		if (metrics != null) {
+			metrics.demotion();
+		}
+	}
+
+	private void countRankChange(int oldRank, int newRank) {
+		/** counts a rank subTreeRank changed as a promotion or a demotion **/
+
+		if (metrics == null) {
+			return;
+		} else if (newRank > oldRank) {
+			metrics.promotion();
+		} else {
+			metrics.demotion();
+		}
 	}
 
 	private boolean isLeaf(Node node) {
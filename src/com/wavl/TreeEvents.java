@@ -0,0 +1,95 @@
+package com.wavl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * TreeEvents
+ *
+ * The Flight Recorder events Tree emits: one per insert, delete, select,
+ * keysToArray and infoToArray that took longer than the event's threshold.
+ * The thresholds below are the defaults; a recording can change them (and
+ * turn each event on or off) by name, e.g. com.wavl.Insert#threshold=1 ms in
+ * a .jfc file, or Recording.enable("com.wavl.Insert").withThreshold(...).
+ *
+ * While no recording has an event on, its begin, end and shouldCommit do
+ * nothing, and the JIT drops the event object; the fields are only filled in
+ * (and the path walked again) for an event that will be committed.
+ *
+ */
+final class TreeEvents {
+
+	private TreeEvents() {
+	}
+
+	@Category("WAVL Tree")
+	abstract static class TreeEvent extends Event {
+
+		@Label("Tree Size")
+		@Description("Number of items in the tree after the operation")
+		int treeSize;
+	}
+
+	@Name("com.wavl.Insert")
+	@Label("Tree Insert")
+	@Threshold("100 us")
+	static final class Insert extends TreeEvent {
+
+		@Label("Key")
+		int key;
+
+		@Label("Rebalances")
+		@Description("Rebalancing operations, or -1 if the key was already there")
+		int rebalances;
+
+		@Label("Path Length")
+		@Description("Real nodes from the root to the key after the operation")
+		int pathLength;
+	}
+
+	@Name("com.wavl.Delete")
+	@Label("Tree Delete")
+	@Threshold("100 us")
+	static final class Delete extends TreeEvent {
+
+		@Label("Key")
+		int key;
+
+		@Label("Rebalances")
+		@Description("Rebalancing operations, or -1 if the key was not there")
+		int rebalances;
+
+		@Label("Path Length")
+		@Description("Real nodes a search for the key passes after the operation")
+		int pathLength;
+	}
+
+	@Name("com.wavl.Select")
+	@Label("Tree Select")
+	@Threshold("100 us")
+	static final class Select extends TreeEvent {
+
+		@Label("Index")
+		int index;
+
+		@Label("Path Length")
+		@Description("Real nodes from the root to the selected item")
+		int pathLength;
+	}
+
+	@Name("com.wavl.KeysToArray")
+	@Label("Tree Keys To Array")
+	@Threshold("10 ms")
+	static final class KeysToArray extends TreeEvent {
+	}
+
+	@Name("com.wavl.InfoToArray")
+	@Label("Tree Info To Array")
+	@Threshold("10 ms")
+	static final class InfoToArray extends TreeEvent {
+	}
+}
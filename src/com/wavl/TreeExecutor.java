@@ -0,0 +1,257 @@
+package com.wavl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TreeExecutor
+ *
+ * A single writer thread that owns a Tree. Any number of threads submit
+ * insert, delete and search requests into a lock free queue and get a
+ * CompletableFuture back; the writer drains up to BATCH requests at a time,
+ * sorts them by key (requests for the same key keep their order), runs them
+ * against the tree and completes the futures. No caller ever takes a lock,
+ * and the tree is switched to finger search, so each request in a sorted
+ * batch starts from where the previous one ended.
+ *
+ * The futures complete on the writer thread, so callers that chain work onto
+ * them should use the async variants to keep the writer free. Once wrapped,
+ * the tree must only be reached through the executor.
+ *
+ */
+public class TreeExecutor implements AutoCloseable {
+
+	/** the most requests the writer takes off the queue at once **/
+	static final int BATCH = 256;
+
+	private static final int INSERT = 0;
+	private static final int DELETE = 1;
+	private static final int SEARCH = 2;
+
+	private static final Comparator<Request> BY_KEY = Comparator.comparingInt(r -> r.key);
+
+	private final Tree tree;
+	private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+	private final Thread writer;
+
+	/** set by the writer before it parks on an empty queue **/
+	private volatile boolean waiting;
+	private volatile boolean closed;
+	private volatile boolean terminated;
+
+	public TreeExecutor() {
+		this(new Tree());
+	}
+
+	public TreeExecutor(Tree tree) {
+		this(tree, r -> {
+			Thread thread = Executors.defaultThreadFactory().newThread(r);
+			thread.setName("wavl-tree-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public TreeExecutor(Tree tree, ThreadFactory threadFactory) {
+		this.tree = tree;
+		tree.setFingerSearch(true);
+		this.writer = threadFactory.newThread(this::drain);
+		writer.start();
+	}
+
+	/**
+	 * public CompletableFuture<Integer> insert(int k, String i)
+	 *
+	 * queues Tree.insert(k, i); the future gets its result
+	 */
+
+	public CompletableFuture<Integer> insert(int k, String i) {
+		Request request = new Request(INSERT, k, i);
+		submit(request);
+		return request.count;
+	}
+
+	/**
+	 * public CompletableFuture<Integer> delete(int k)
+	 *
+	 * queues Tree.delete(k); the future gets its result
+	 */
+
+	public CompletableFuture<Integer> delete(int k) {
+		Request request = new Request(DELETE, k, null);
+		submit(request);
+		return request.count;
+	}
+
+	/**
+	 * public CompletableFuture<String> search(int k)
+	 *
+	 * queues Tree.search(k); the future gets its result
+	 */
+
+	public CompletableFuture<String> search(int k) {
+		Request request = new Request(SEARCH, k, null);
+		submit(request);
+		return request.info;
+	}
+
+	private void submit(Request request) {
+		/**
+		 * 1. after close, reject 2. queue, and wake the writer if it is parked
+		 * 3. if the writer terminated meanwhile, nobody else will drain the
+		 * queue: reject whatever is left, this request included
+		 **/
+
+		if (closed) { // 1
+			request.reject();
+			return;
+		}
+		queue.offer(request); // 2
+		if (waiting) {
+			LockSupport.unpark(writer);
+		}
+		if (terminated) { // 3
+			rejectQueued();
+		}
+	}
+
+	private void drain() {
+		/**
+		 * the writer loop 1. take a batch off the queue 2. if there is none,
+		 * park until a submit wakes us (checking the queue again after setting
+		 * waiting, so no wake up is lost) 3. sort the batch by key, stable, and
+		 * run it 4. after close, finish what is queued, then reject latecomers
+		 * 5. if an Error (say, an OutOfMemoryError) ends the loop, fail the
+		 * rest of the batch with it, and reject the queue as after close
+		 **/
+
+		Request[] batch = new Request[BATCH];
+		try {
+			while (true) {
+				int n = 0; // 1
+				Request request;
+				while (n < BATCH && (request = queue.poll()) != null) {
+					batch[n++] = request;
+				}
+				if (n == 0) {
+					if (closed) {
+						break;
+					}
+					waiting = true; // 2
+					if (queue.isEmpty() && !closed) {
+						LockSupport.park(this);
+					}
+					waiting = false;
+					continue;
+				}
+				if (n > 1) { // 3
+					Arrays.sort(batch, 0, n, BY_KEY);
+				}
+				for (int i = 0; i < n; i++) {
+					run(batch[i]);
+					batch[i] = null;
+				}
+			}
+		} catch (Error e) { // 5
+			for (int i = 0; i < BATCH; i++) {
+				if (batch[i] != null) {
+					batch[i].fail(e);
+				}
+			}
+			throw e;
+		} finally {
+			closed = true; // 4 + 5
+			terminated = true;
+			rejectQueued();
+		}
+	}
+
+	private void run(Request request) {
+		try {
+			switch (request.kind) {
+			case INSERT:
+				request.count.complete(tree.insert(request.key, request.value));
+				break;
+			case DELETE:
+				request.count.complete(tree.delete(request.key));
+				break;
+			default:
+				request.info.complete(tree.search(request.key));
+			}
+		} catch (RuntimeException e) {
+			request.fail(e);
+		}
+	}
+
+	private void rejectQueued() {
+		Request request;
+		while ((request = queue.poll()) != null) {
+			request.reject();
+		}
+	}
+
+	/**
+	 * public void close()
+	 *
+	 * stops taking requests, and waits for the writer to finish the ones
+	 * already queued. Requests submitted after close fail with
+	 * RejectedExecutionException.
+	 */
+
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		if (Thread.currentThread() == writer) {
+			return;
+		}
+		boolean interrupted = false;
+		while (writer.isAlive()) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** one queued call; count or info is the future the caller holds **/
+
+	private static final class Request {
+
+		final int kind;
+		final int key;
+		final String value;
+		final CompletableFuture<Integer> count;
+		final CompletableFuture<String> info;
+
+		Request(int kind, int key, String value) {
+			this.kind = kind;
+			this.key = key;
+			this.value = value;
+			this.count = kind == SEARCH ? null : new CompletableFuture<>();
+			this.info = kind == SEARCH ? new CompletableFuture<>() : null;
+		}
+
+		void fail(Throwable e) {
+			if (count != null) {
+				count.completeExceptionally(e);
+			} else {
+				info.completeExceptionally(e);
+			}
+		}
+
+		void reject() {
+			fail(new RejectedExecutionException("the tree executor is closed"));
+		}
+	}
+}
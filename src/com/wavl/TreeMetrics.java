@@ -0,0 +1,190 @@
+package com.wavl;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * TreeMetrics
+ *
+ * Cumulative counters for the trees it is attached to with Tree.setMetrics:
+ * promotions, demotions, single and double rotations (the I variants during
+ * insert, the D variants during delete), new nodes, the length of the search
+ * path of every search, insert and delete, and the root rank of the tree that
+ * changed last. A path is the nodes the walk visits: it starts at max or min
+ * for a key beyond them, and in finger search mode at the finger, climbing
+ * included. A tree without metrics (the default) pays one null check per
+ * rebalancing step and nothing else.
+ *
+ * The counters are LongAdders, so one TreeMetrics can be shared by trees used
+ * from different threads. They can be read through JMX (register) or pushed
+ * to any other system through a Sink (report).
+ *
+ */
+public class TreeMetrics implements TreeMetricsMXBean {
+
+	/** path lengths from here up share the last histogram bucket **/
+	static final int MAX_PATH = 64;
+
+	private final LongAdder promotions = new LongAdder();
+	private final LongAdder demotions = new LongAdder();
+	private final LongAdder singleRotationsInsert = new LongAdder();
+	private final LongAdder doubleRotationsInsert = new LongAdder();
+	private final LongAdder singleRotationsDelete = new LongAdder();
+	private final LongAdder doubleRotationsDelete = new LongAdder();
+	private final LongAdder allocations = new LongAdder();
+	private final AtomicLongArray pathLengths = new AtomicLongArray(MAX_PATH + 1);
+	private volatile int rootRank = -1;
+
+	/**
+	 * public interface Sink
+	 *
+	 * receives every counter by name from report, e.g. to forward it to a
+	 * metrics library
+	 */
+
+	public interface Sink {
+		public void counter(String name, long value);
+	}
+
+	void promotion() {
+		promotions.increment();
+	}
+
+	void demotion() {
+		demotions.increment();
+	}
+
+	void singleRotationInsert() {
+		singleRotationsInsert.increment();
+	}
+
+	void doubleRotationInsert() {
+		doubleRotationsInsert.increment();
+	}
+
+	void singleRotationDelete() {
+		singleRotationsDelete.increment();
+	}
+
+	void doubleRotationDelete() {
+		doubleRotationsDelete.increment();
+	}
+
+	void allocation() {
+		allocations.increment();
+	}
+
+	void searchPath(int length) {
+		pathLengths.incrementAndGet(Math.min(length, MAX_PATH));
+	}
+
+	void rootRank(int rank) {
+		rootRank = rank;
+	}
+
+	@Override
+	public long getPromotions() {
+		return promotions.sum();
+	}
+
+	@Override
+	public long getDemotions() {
+		return demotions.sum();
+	}
+
+	@Override
+	public long getSingleRotationsInsert() {
+		return singleRotationsInsert.sum();
+	}
+
+	@Override
+	public long getDoubleRotationsInsert() {
+		return doubleRotationsInsert.sum();
+	}
+
+	@Override
+	public long getSingleRotationsDelete() {
+		return singleRotationsDelete.sum();
+	}
+
+	@Override
+	public long getDoubleRotationsDelete() {
+		return doubleRotationsDelete.sum();
+	}
+
+	@Override
+	public long getAllocations() {
+		return allocations.sum();
+	}
+
+	@Override
+	public long getSearches() {
+		long searches = 0;
+		for (int i = 0; i <= MAX_PATH; i++) {
+			searches += pathLengths.get(i);
+		}
+		return searches;
+	}
+
+	@Override
+	public long[] getSearchPathLengths() {
+		/** index i counts the paths of i real nodes (the last, of MAX_PATH or more) **/
+
+		long[] counts = new long[MAX_PATH + 1];
+		for (int i = 0; i <= MAX_PATH; i++) {
+			counts[i] = pathLengths.get(i);
+		}
+		return counts;
+	}
+
+	@Override
+	public int getRootRank() {
+		/**
+		 * the rank bounds the height: rank / 2 <= height <= rank, counting the
+		 * edges down to the deepest leaf
+		 **/
+
+		return rootRank;
+	}
+
+	/**
+	 * public void report(Sink sink)
+	 *
+	 * passes every counter to sink, the histogram as searchPathLength.<i> for
+	 * its non empty buckets
+	 */
+
+	public void report(Sink sink) {
+		sink.counter("promotions", getPromotions());
+		sink.counter("demotions", getDemotions());
+		sink.counter("singleRotationsInsert", getSingleRotationsInsert());
+		sink.counter("doubleRotationsInsert", getDoubleRotationsInsert());
+		sink.counter("singleRotationsDelete", getSingleRotationsDelete());
+		sink.counter("doubleRotationsDelete", getDoubleRotationsDelete());
+		sink.counter("allocations", getAllocations());
+		sink.counter("rootRank", getRootRank());
+		long[] counts = getSearchPathLengths();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				sink.counter("searchPathLength." + i, counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * public ObjectName register(String name)
+	 *
+	 * registers these metrics with the platform MBean server as
+	 * com.wavl:type=TreeMetrics,name=<name> and returns the name
+	 */
+
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("com.wavl:type=TreeMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+}
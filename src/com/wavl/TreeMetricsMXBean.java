@@ -0,0 +1,31 @@
+package com.wavl;
+
+/**
+ * TreeMetricsMXBean
+ *
+ * The JMX view of a TreeMetrics: cumulative counters since it was made, and
+ * the root rank of the tree that changed last.
+ *
+ */
+public interface TreeMetricsMXBean {
+
+	public long getPromotions();
+
+	public long getDemotions();
+
+	public long getSingleRotationsInsert();
+
+	public long getDoubleRotationsInsert();
+
+	public long getSingleRotationsDelete();
+
+	public long getDoubleRotationsDelete();
+
+	public long getAllocations();
+
+	public long getSearches();
+
+	public long[] getSearchPathLengths(); // count of searches by path length
+
+	public int getRootRank();
+}
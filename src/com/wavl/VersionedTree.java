@@ -0,0 +1,110 @@
+package com.wavl;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * VersionedTree
+ *
+ * The current version of a PersistentTree, shared between threads. A writer
+ * builds the next version off the current one and publishes it with one
+ * compare-and-set, retrying if another writer published first. Readers never
+ * lock and never wait: each read runs on whatever version is current when it
+ * starts, and snapshot() hands out that version for a series of reads that
+ * must agree with each other.
+ *
+ */
+public class VersionedTree {
+
+	private final AtomicReference<PersistentTree> current;
+
+	public VersionedTree() {
+		this(PersistentTree.emptyTree());
+	}
+
+	public VersionedTree(PersistentTree initial) {
+		current = new AtomicReference<>(initial);
+	}
+
+	/**
+	 * public PersistentTree snapshot()
+	 *
+	 * returns the current version, which later inserts and deletes don't
+	 * change
+	 */
+
+	public PersistentTree snapshot() {
+		return current.get();
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 *
+	 * inserts an item with key k and info i to the tree, and publishes the new
+	 * version. returns the number of rebalancing operations, or -1 if an item
+	 * with key k already exists in the tree.
+	 */
+
+	public int insert(int k, String i) {
+		while (true) {
+			PersistentTree version = current.get();
+			PersistentTree next = version.insert(k, i);
+			if (next == version) {
+				return -1;
+			}
+			if (current.compareAndSet(version, next)) {
+				return next.rebalances();
+			}
+		}
+	}
+
+	/**
+	 * public int delete(int k)
+	 *
+	 * deletes an item with key k from the tree, if it exists, and publishes
+	 * the new version. returns the number of rebalancing operations, or -1 if
+	 * an item with key k was not found in the tree.
+	 */
+
+	public int delete(int k) {
+		while (true) {
+			PersistentTree version = current.get();
+			PersistentTree next = version.delete(k);
+			if (next == version) {
+				return -1;
+			}
+			if (current.compareAndSet(version, next)) {
+				return next.rebalances();
+			}
+		}
+	}
+
+	/**
+	 * public String search(int k)
+	 *
+	 * search on the current version
+	 */
+
+	public String search(int k) {
+		return current.get().search(k);
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * select on the current version
+	 */
+
+	public String select(int i) {
+		return current.get().select(i);
+	}
+
+	/**
+	 * public int size()
+	 *
+	 * the size of the current version
+	 */
+
+	public int size() {
+		return current.get().size();
+	}
+}